@@ -35,6 +35,8 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-websocket")
 	implementation("org.thymeleaf.extras:thymeleaf-extras-springsecurity6")
 	implementation("com.turkraft.springfilter:jpa:3.1.7")
+	implementation("org.flywaydb:flyway-core")
+	implementation("org.flywaydb:flyway-mysql")
 	compileOnly("org.projectlombok:lombok")
 	developmentOnly("org.springframework.boot:spring-boot-devtools")
 	runtimeOnly("com.mysql:mysql-connector-j")
@@ -42,6 +44,7 @@ dependencies {
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testImplementation("org.springframework.security:spring-security-test")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+	testImplementation("ch.vorburger.mariaDB4j:mariaDB4j:3.1.0")
 	// AWS S3 SDK
     implementation("software.amazon.awssdk:s3:2.21.29")
     implementation("software.amazon.awssdk:auth:2.21.29")
@@ -53,6 +56,39 @@ tasks.withType<Test> {
 	useJUnitPlatform()
 }
 
+// Benchmark / stress chạy trên MariaDB nhúng, tách khỏi `test`: ./gradlew benchmark, ./gradlew stress
+tasks.test {
+	useJUnitPlatform {
+		excludeTags("benchmark", "stress")
+	}
+}
+
+tasks.register<Test>("benchmark") {
+	description = "Runs benchmarks tagged 'benchmark' against an embedded MariaDB."
+	group = "verification"
+	testClassesDirs = sourceSets.test.get().output.classesDirs
+	classpath = sourceSets.test.get().runtimeClasspath
+	useJUnitPlatform {
+		includeTags("benchmark")
+	}
+	testLogging {
+		showStandardStreams = true
+	}
+}
+
+tasks.register<Test>("stress") {
+	description = "Runs the concurrent checkout stress suite tagged 'stress' against an embedded MariaDB."
+	group = "verification"
+	testClassesDirs = sourceSets.test.get().output.classesDirs
+	classpath = sourceSets.test.get().runtimeClasspath
+	useJUnitPlatform {
+		includeTags("stress")
+	}
+	testLogging {
+		showStandardStreams = true
+	}
+}
+
 tasks.withType<JavaCompile> {
     options.compilerArgs.add("-parameters")
 }
@@ -0,0 +1,38 @@
+package com.example.AR_BE.config;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Order / OrderItem lấy id theo block (pooled, allocationSize 50) từ bảng id_generators
+ * thay cho AUTO_INCREMENT, để Hibernate gom INSERT thành JDBC batch.
+ *
+ * Bảng được tạo bởi migration V2. Dữ liệu cũ được tạo bằng AUTO_INCREMENT nên
+ * trước khi nhận request, đẩy next_val lên trên MAX(id) hiện có. Pooled optimizer
+ * dùng dải (next_val - 50, next_val], vì vậy next_val phải >= MAX(id) + 50 + 1.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdGeneratorInitializer implements SmartInitializingSingleton {
+
+    static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        seed("orders");
+        seed("order_items");
+    }
+
+    // Tên generator trùng tên bảng
+    private void seed(String table) {
+        jdbcTemplate.update("INSERT IGNORE INTO id_generators (name, next_val) VALUES (?, 1)", table);
+        jdbcTemplate.update("UPDATE id_generators SET next_val = GREATEST(COALESCE(next_val, 1), "
+                + "(SELECT COALESCE(MAX(id), 0) + ? FROM " + table + ")) WHERE name = ?",
+                ALLOCATION_SIZE + 1, table);
+    }
+}
@@ -52,6 +52,8 @@ public class SecurityConfiguration {
                                 .requestMatchers("/", "/auth/login", "/auth/register").permitAll()
                                 .requestMatchers(HttpMethod.GET, "/api/v1/products/**").permitAll()
                                 .requestMatchers("/api/v1/files/urls").permitAll()
+                                // Handshake WebSocket: xác thực bằng token trong STOMP CONNECT
+                                .requestMatchers("/ws/**").permitAll()
                                 .anyRequest().authenticated())
                 .oauth2ResourceServer((oauth2) -> oauth2
                         .jwt(Customizer.withDefaults())
@@ -0,0 +1,95 @@
+package com.example.AR_BE.config;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import com.example.AR_BE.service.OrderStatusNotifier;
+import com.example.AR_BE.service.ProductStockBroadcaster;
+import com.example.AR_BE.utils.CurrentUser;
+import com.example.AR_BE.utils.SecurityUtils;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Xác thực STOMP: CONNECT có header "Authorization: Bearer <access token>" thì
+ * principal của session có name = userId, nên convertAndSendToUser(userId, ...)
+ * chỉ tới đúng các session của user đó. CONNECT không có token là khách:
+ * chỉ được xem /topic/products/{id} (giống GET /api/v1/products/** public).
+ *
+ * Client chỉ được SUBSCRIBE các destination cho phép, không được SEND.
+ */
+@Component
+@RequiredArgsConstructor
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final List<String> USER_DESTINATIONS = List.of("/user" + OrderStatusNotifier.DESTINATION);
+    private static final Pattern PUBLIC_DESTINATION =
+            Pattern.compile(Pattern.quote(ProductStockBroadcaster.TOPIC_PREFIX) + "\\d+");
+
+    private final JwtDecoder jwtDecoder;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT:
+                String authorization = accessor.getFirstNativeHeader("Authorization");
+                if (authorization != null) {
+                    accessor.setUser(authenticate(authorization));
+                }
+                break;
+            case SUBSCRIBE:
+                String destination = accessor.getDestination();
+                if (destination != null && PUBLIC_DESTINATION.matcher(destination).matches()) {
+                    break;
+                }
+                if (!USER_DESTINATIONS.contains(destination)) {
+                    throw new MessagingException("Subscription not allowed: " + destination);
+                }
+                if (accessor.getUser() == null) {
+                    throw new MessagingException("Not authenticated");
+                }
+                break;
+            case SEND:
+                throw new MessagingException("SEND is not supported");
+            default:
+                break;
+        }
+        return message;
+    }
+
+    private JwtAuthenticationToken authenticate(String header) {
+        if (!header.startsWith(BEARER_PREFIX)) {
+            throw new MessagingException("Missing access token");
+        }
+        Jwt jwt;
+        try {
+            jwt = jwtDecoder.decode(header.substring(BEARER_PREFIX.length()));
+        } catch (JwtException e) {
+            throw new MessagingException("Invalid access token");
+        }
+        CurrentUser user = SecurityUtils.extractCurrentUser(jwt);
+        if (user == null) {
+            throw new MessagingException("Invalid access token");
+        }
+        return new JwtAuthenticationToken(jwt, List.of(), String.valueOf(user.getId()));
+    }
+}
@@ -6,6 +6,7 @@ import com.example.AR_BE.domain.User;
 import com.example.AR_BE.domain.request.RestLoginDTORequest;
 import com.example.AR_BE.domain.response.NewUserDTOResponse;
 import com.example.AR_BE.domain.response.RestLoginDTOResponse;
+import com.example.AR_BE.service.UserCache;
 import com.example.AR_BE.service.UserService;
 
 import jakarta.validation.Valid;
@@ -32,15 +33,17 @@ public class AuthController {
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
     private final SecurityUtils securityUtils;
     private final UserService userService;
+    private final UserCache userCache;
     @Value("${demo.jwt.refresh-token-validity-in-seconds}")
     private Long jwtRefreshTokenValidity;
     private final PasswordEncoder passwordEncoder;
 
     public AuthController(AuthenticationManagerBuilder authenticationManagerBuilder, SecurityUtils securityUtils,
-            UserService userService, PasswordEncoder passwordEncoder) {
+            UserService userService, UserCache userCache, PasswordEncoder passwordEncoder) {
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.securityUtils = securityUtils;
         this.userService = userService;
+        this.userCache = userCache;
         this.passwordEncoder = passwordEncoder;
     }
 
@@ -69,11 +72,9 @@ public class AuthController {
 
     @GetMapping("/auth/account")
     public ResponseEntity<RestLoginDTOResponse.UserLogin> getAccount() {
-        String email = SecurityUtils.getCurrentUserLogin().isPresent() ? SecurityUtils.getCurrentUserLogin().get() : "";
-        User userDB = userService.findUserByUsername(email);
-        RestLoginDTOResponse.UserLogin userLogin = new RestLoginDTOResponse.UserLogin(userDB.getId(), userDB.getEmail(),
-                userDB.getName(), userDB.getRole(), userDB.getPhoneNumber());
-        return ResponseEntity.ok().body(userLogin);
+        // Email lấy từ token, account qua UserCache (không query mỗi request)
+        String email = this.userCache.currentUser().getEmail();
+        return ResponseEntity.ok().body(this.userCache.getAccount(email));
     }
 
     @PostMapping("/auth/register")
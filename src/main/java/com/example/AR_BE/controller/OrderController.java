@@ -1,16 +1,34 @@
 package com.example.AR_BE.controller;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.AR_BE.domain.dto.AdmissionDTO;
 import com.example.AR_BE.domain.dto.OrderDTO;
 import com.example.AR_BE.domain.dto.OrderDetailDTO;
+import com.example.AR_BE.domain.dto.OrderStatusBatchResultDTO;
+import com.example.AR_BE.domain.dto.OrderStatusSummaryDTO;
+import com.example.AR_BE.domain.dto.OrderTicketDTO;
+import com.example.AR_BE.domain.request.BatchUpdateOrderStatusRequest;
 import com.example.AR_BE.domain.request.CreateOrderRequest;
 import com.example.AR_BE.domain.request.UpdateOrderStatusRequest;
 import com.example.AR_BE.domain.response.ResultPaginationDTO;
 import com.example.AR_BE.domain.Order;
+import com.example.AR_BE.service.IdempotencyService;
+import com.example.AR_BE.service.OrderExportService;
+import com.example.AR_BE.service.OrderIntakeService;
 import com.example.AR_BE.service.OrderService;
+import com.example.AR_BE.service.WaitingRoomService;
 import com.example.AR_BE.utils.annotation.ApiMessage;
 
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -19,23 +37,63 @@ import lombok.RequiredArgsConstructor;
 public class OrderController {
 
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final OrderIntakeService orderIntakeService;
+    private final OrderExportService orderExportService;
+    private final WaitingRoomService waitingRoomService;
+
+    // Vào phòng chờ trước khi đặt hàng lúc đông (flash sale), trả token + vị trí / ETA
+    @PostMapping("/orders/waiting-room")
+    public ResponseEntity<AdmissionDTO> joinWaitingRoom() {
+        return ResponseEntity.ok(waitingRoomService.join());
+    }
 
-    @PostMapping("/orders/create")
-    public ResponseEntity<OrderDTO> createOrder(@RequestBody CreateOrderRequest request) {
+    @GetMapping("/orders/waiting-room/{token}")
+    public ResponseEntity<AdmissionDTO> getAdmission(@PathVariable String token) {
+        return ResponseEntity.ok(waitingRoomService.getStatus(token));
+    }
 
-        Order order = orderService.createOrder(request);
-        OrderDTO dto = orderService.convertToDTO(order);
+    @PostMapping("/orders/create")
+    public ResponseEntity<?> createOrder(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = "X-Admission-Token", required = false) String admissionToken,
+            @RequestBody CreateOrderRequest request) {
+
+        // Qua phòng chờ trước khi lấy connection (hết lượt → 429)
+        try (WaitingRoomService.Admission admission = waitingRoomService.enter(admissionToken)) {
+            if (idempotencyKey != null) {
+                // Client retry cùng key → trả lại đúng order đã tạo
+                OrderDTO dto = idempotencyService.execute(idempotencyKey, request, OrderDTO.class,
+                        () -> orderService.convertToDTO(orderService.createOrder(request)));
+                return ResponseEntity.ok(dto);
+            }
+
+            if (orderIntakeService.isEnabled()) {
+                // Async: xếp hàng rồi trả ticket, client poll /orders/tickets/{ticketId}
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(orderIntakeService.submit(request));
+            }
+
+            Order order = orderService.createOrder(request);
+            OrderDTO dto = orderService.convertToDTO(order);
+
+            return ResponseEntity.ok(dto);
+        }
+    }
 
-        return ResponseEntity.ok(dto);
+    @GetMapping("/orders/tickets/{ticketId}")
+    public ResponseEntity<OrderTicketDTO> getOrderTicket(@PathVariable String ticketId) {
+        return ResponseEntity.ok(orderIntakeService.getTicket(ticketId));
     }
 
     @GetMapping("/orders/paging")
     public ResponseEntity<ResultPaginationDTO> getMyOrdersPaging(
             @RequestParam String status,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
 
-        ResultPaginationDTO result = orderService.getOrdersByStatusPaging(status, page, size);
+        ResultPaginationDTO result = orderService.getOrdersByStatusPaging(status, page, size, cursor, withTotal);
 
         return ResponseEntity.ok(result);
     }
@@ -61,20 +119,38 @@ public class OrderController {
     public ResponseEntity<ResultPaginationDTO> getMyOrders(
             @RequestParam String status,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
 
-        ResultPaginationDTO result = orderService.getMyOrdersByStatus(status, page, size);
+        ResultPaginationDTO result = orderService.getMyOrdersByStatus(status, page, size, cursor, withTotal);
         return ResponseEntity.ok(result);
     }
 
+    // API cho USER - Số đơn theo từng status (badge), 1 request thay cho mỗi status 1 lần
+    @GetMapping("/orders/my-orders/summary")
+    public ResponseEntity<OrderStatusSummaryDTO> getMyOrderSummary(
+            @RequestParam(defaultValue = "false") boolean withAmount) {
+        return ResponseEntity.ok(orderService.getMyOrderSummary(withAmount));
+    }
+
+    // API cho ADMIN - Số đơn toàn hệ thống theo từng status
+    @GetMapping("/orders/admin/summary")
+    public ResponseEntity<OrderStatusSummaryDTO> getOrderSummaryForAdmin(
+            @RequestParam(defaultValue = "false") boolean withAmount) {
+        return ResponseEntity.ok(orderService.getOrderSummaryForAdmin(withAmount));
+    }
+
     // API cho ADMIN - xem tất cả đơn hàng
     @GetMapping("/orders/admin/all-orders")
     public ResponseEntity<ResultPaginationDTO> getAllOrdersForAdmin(
             @RequestParam(required = false) String status,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
 
-        ResultPaginationDTO result = orderService.getAllOrdersByStatusForAdmin(status, page, size);
+        ResultPaginationDTO result = orderService.getAllOrdersByStatusForAdmin(status, page, size, cursor, withTotal);
         return ResponseEntity.ok(result);
     }
 
@@ -97,4 +173,29 @@ public class OrderController {
         return ResponseEntity.ok(updatedOrder);
     }
 
+    // API cho ADMIN - Cập nhật status nhiều đơn 1 lần, trả kết quả theo từng đơn
+    @PutMapping("/orders/admin/status:batch")
+    @ApiMessage("Order statuses updated")
+    public ResponseEntity<OrderStatusBatchResultDTO> updateOrderStatusBatch(
+            @Valid @RequestBody BatchUpdateOrderStatusRequest request) {
+        OrderStatusBatchResultDTO result = orderService.updateOrderStatusBatch(
+                request.getOrderIds(), request.getStatus());
+        return ResponseEntity.ok(result);
+    }
+
+    // API cho ADMIN - Export đơn hàng (CSV / NDJSON), ghi dần ra response
+    @GetMapping("/orders/admin/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = OrderExportService.FORMAT_CSV) String format) {
+        StreamingResponseBody body = orderExportService.export(status, from, to, format);
+        boolean csv = OrderExportService.FORMAT_CSV.equals(format);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders." + format + "\"")
+                .body(body);
+    }
 }
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import com.turkraft.springfilter.boot.Filter;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.AR_BE.domain.Permission;
@@ -65,7 +66,14 @@ public class PermissionController {
     }
 
     @GetMapping("/permissions")
-    public ResponseEntity<ResultPaginationDTO> getAllPermissions(@Filter Specification<Permission> spec, Pageable pageable) {
-        return ResponseEntity.ok(this.permissionService.getAllPermissions(spec, pageable));
+    public ResponseEntity<ResultPaginationDTO> getAllPermissions(@Filter Specification<Permission> spec, Pageable pageable,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(name = "filter", required = false) String filter,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
+        if (cursor != null) {
+            return ResponseEntity.ok(
+                    this.permissionService.getAllPermissionsByCursor(spec, cursor, pageable.getPageSize()));
+        }
+        return ResponseEntity.ok(this.permissionService.getAllPermissions(spec, filter, pageable, withTotal));
     }
 }
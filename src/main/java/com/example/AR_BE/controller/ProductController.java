@@ -1,10 +1,13 @@
 package com.example.AR_BE.controller;
 
 import com.example.AR_BE.domain.dto.ProductDTO;
+import com.example.AR_BE.domain.dto.StockShardsDTO;
 import com.example.AR_BE.domain.request.CreateProductDTO;
+import com.example.AR_BE.domain.request.RebalanceStockShardsRequest;
 import com.example.AR_BE.domain.request.UpdateProductDTO;
 import com.example.AR_BE.domain.response.ResultPaginationDTO;
 import com.example.AR_BE.service.ProductService;
+import com.example.AR_BE.service.inventory.StockShardService;
 import com.example.AR_BE.utils.exception.IdInvalidException;
 import com.example.AR_BE.utils.annotation.ApiMessage;
 import jakarta.validation.Valid;
@@ -18,9 +21,11 @@ import org.springframework.web.bind.annotation.*;
 public class ProductController {
 
     private final ProductService productService;
+    private final StockShardService stockShardService;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, StockShardService stockShardService) {
         this.productService = productService;
+        this.stockShardService = stockShardService;
     }
 
     @GetMapping("/products")
@@ -28,8 +33,11 @@ public class ProductController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "20") int pageSize,
             @RequestParam(required = false) String search,
-            @RequestParam(required = false) Long categoryId) {
-        ResultPaginationDTO result = productService.getProducts(page, pageSize, search, categoryId);
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
+        ResultPaginationDTO result = productService.getProducts(page, pageSize, search, categoryId, cursor,
+                withTotal);
         return ResponseEntity.ok(result);
     }
 
@@ -76,10 +84,35 @@ public class ProductController {
     public ResponseEntity<ResultPaginationDTO> getProductsWithCategory(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false) Long categoryId) {
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
 
-        ResultPaginationDTO result = productService.getProductsWithCategory(page, size, categoryId);
+        ResultPaginationDTO result = productService.getProductsWithCategory(page, size, categoryId, cursor,
+                withTotal);
         return ResponseEntity.ok(result);
     }
 
+    @GetMapping("/products/{id}/stock-shards")
+    public ResponseEntity<StockShardsDTO> getStockShards(@PathVariable Long id) {
+        return ResponseEntity.ok(stockShardService.getShards(id));
+    }
+
+    // Bật shard (hoặc đổi số shard) cho product hot và chia đều lại stock
+    @PutMapping("/products/{id}/stock-shards")
+    @ApiMessage("Product stock shards rebalanced")
+    public ResponseEntity<StockShardsDTO> rebalanceStockShards(
+            @PathVariable Long id,
+            @RequestBody(required = false) RebalanceStockShardsRequest req) {
+        Integer shardCount = req != null ? req.getShardCount() : null;
+        return ResponseEntity.ok(stockShardService.rebalance(id, shardCount));
+    }
+
+    // Tắt shard, gom stock về products.quantity
+    @DeleteMapping("/products/{id}/stock-shards")
+    @ApiMessage("Product stock shards removed")
+    public ResponseEntity<StockShardsDTO> removeStockShards(@PathVariable Long id) {
+        return ResponseEntity.ok(stockShardService.disable(id));
+    }
+
 }
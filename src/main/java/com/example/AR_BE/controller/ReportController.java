@@ -0,0 +1,62 @@
+package com.example.AR_BE.controller;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.example.AR_BE.domain.dto.SalesRollupDTO;
+import com.example.AR_BE.domain.dto.SalesRollupRebuildDTO;
+import com.example.AR_BE.service.SalesReportService;
+import com.example.AR_BE.utils.annotation.ApiMessage;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class ReportController {
+
+    private final SalesReportService salesReportService;
+
+    // API cho ADMIN - Doanh số theo ngày (dimension = CATEGORY | PRODUCT)
+    @GetMapping("/reports/admin/sales/daily")
+    public ResponseEntity<List<SalesRollupDTO>> getDailySales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "CATEGORY") String dimension) {
+        return ResponseEntity.ok(salesReportService.getDaily(from, to, dimension));
+    }
+
+    // API cho ADMIN - Doanh số theo giờ trong [from, to)
+    @GetMapping("/reports/admin/sales/hourly")
+    public ResponseEntity<List<SalesRollupDTO>> getHourlySales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "CATEGORY") String dimension,
+            @RequestParam(required = false) Long dimensionId) {
+        return ResponseEntity.ok(salesReportService.getHourly(from, to, dimension, dimensionId));
+    }
+
+    // API cho ADMIN - Top category / product theo doanh thu net
+    @GetMapping("/reports/admin/sales/top")
+    public ResponseEntity<List<SalesRollupDTO>> getTopSales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "CATEGORY") String dimension,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(salesReportService.getTop(from, to, dimension, limit));
+    }
+
+    // API cho ADMIN - Tính lại rollup của 1 khoảng ngày từ orders
+    @PostMapping("/reports/admin/sales/rebuild")
+    @ApiMessage("Sales rollups rebuilt")
+    public ResponseEntity<SalesRollupRebuildDTO> rebuildSales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(salesReportService.rebuild(from, to));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.AR_BE.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.example.AR_BE.domain.dto.ReservationDTO;
+import com.example.AR_BE.domain.request.CreateReservationRequest;
+import com.example.AR_BE.service.ReservationService;
+import com.example.AR_BE.utils.annotation.ApiMessage;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class ReservationController {
+
+    private final ReservationService reservationService;
+
+    @PostMapping("/reservations")
+    @ApiMessage("Stock reserved")
+    public ResponseEntity<ReservationDTO> createReservation(@RequestBody CreateReservationRequest request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(reservationService.create(request));
+    }
+
+    @GetMapping("/reservations/{reservationId}")
+    public ResponseEntity<ReservationDTO> getReservation(@PathVariable Long reservationId) {
+        return ResponseEntity.ok(reservationService.getReservation(reservationId));
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @ApiMessage("Reservation released")
+    public ResponseEntity<ReservationDTO> releaseReservation(@PathVariable Long reservationId) {
+        return ResponseEntity.ok(reservationService.release(reservationId));
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.AR_BE.domain.Role;
@@ -60,7 +61,13 @@ public class RoleController {
     }
 
     @GetMapping("/roles")
-    public ResponseEntity<ResultPaginationDTO> getRoles(@Filter Specification<Role> spec, Pageable pageable) {
-        return ResponseEntity.ok().body(this.roleService.fetchRoles(spec, pageable));
+    public ResponseEntity<ResultPaginationDTO> getRoles(@Filter Specification<Role> spec, Pageable pageable,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(name = "filter", required = false) String filter,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
+        if (cursor != null) {
+            return ResponseEntity.ok().body(this.roleService.fetchRolesByCursor(spec, cursor, pageable.getPageSize()));
+        }
+        return ResponseEntity.ok().body(this.roleService.fetchRoles(spec, filter, pageable, withTotal));
     }
 }
@@ -65,8 +65,14 @@ public class UserController {
     }
 
     @GetMapping("/users")
-    public ResponseEntity<ResultPaginationDTO> getAllUsers(@Filter Specification<User> filter, Pageable pageable) {
-        return ResponseEntity.ok(this.userService.handleGetAllUsers(filter, pageable));
+    public ResponseEntity<ResultPaginationDTO> getAllUsers(@Filter Specification<User> filter, Pageable pageable,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(name = "filter", required = false) String filterQuery,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
+        if (cursor != null) {
+            return ResponseEntity.ok(this.userService.handleGetAllUsersByCursor(filter, cursor, pageable.getPageSize()));
+        }
+        return ResponseEntity.ok(this.userService.handleGetAllUsers(filter, filterQuery, pageable, withTotal));
     }
 
     @PutMapping("users")
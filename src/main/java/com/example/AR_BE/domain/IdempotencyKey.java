@@ -0,0 +1,41 @@
+package com.example.AR_BE.domain;
+
+import java.time.Instant;
+
+import com.example.AR_BE.utils.constants.IdempotencyStatusEnum;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Idempotency-Key đã dùng: fingerprint của request + response đã trả (JSON),
+ * để client retry nhận lại đúng kết quả thay vì tạo thêm order.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires", columnList = "expires_at"))
+public class IdempotencyKey {
+
+    // "<user>:<Idempotency-Key>"
+    @Id
+    @Column(name = "scoped_key", length = 191)
+    private String scopedKey;
+
+    // SHA-256 hex của request body
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private IdempotencyStatusEnum status;
+
+    @Column(columnDefinition = "TEXT")
+    private String response;
+
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
@@ -17,8 +17,11 @@ import lombok.Setter;
 @Table(name = "orders")
 public class Order {
 
+    // Cấp id theo block từ bảng id_generators (xem IdGeneratorInitializer) để Hibernate batch được INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @TableGenerator(name = "orders_id", table = "id_generators", pkColumnName = "name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
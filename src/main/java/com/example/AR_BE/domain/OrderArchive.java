@@ -0,0 +1,44 @@
+package com.example.AR_BE.domain;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.Immutable;
+
+import com.example.AR_BE.utils.constants.StatusEnum;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Đơn đã kết thúc được chuyển khỏi orders (xem OrderArchiveService).
+ * Chỉ đọc: dữ liệu được ghi bằng INSERT ... SELECT khi archive.
+ */
+@Getter
+@Setter
+@Entity
+@Immutable
+@Table(name = "orders_archive")
+public class OrderArchive {
+
+    // Giữ nguyên id của orders
+    @Id
+    private Long id;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    private Double totalAmount;
+
+    private String shippingAddress;
+
+    @Enumerated(EnumType.STRING)
+    private StatusEnum status;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+    private String createdBy;
+    private String updatedBy;
+
+    private Instant archivedAt;
+}
@@ -10,8 +10,11 @@ import lombok.Setter;
 @Table(name = "order_items")
 public class OrderItem {
 
+    // Cùng cơ chế cấp id theo block như Order.id
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_items_id")
+    @TableGenerator(name = "order_items_id", table = "id_generators", pkColumnName = "name",
+            valueColumnName = "next_val", pkColumnValue = "order_items", allocationSize = 50)
     private Long id;
 
     // Quan hệ với Order
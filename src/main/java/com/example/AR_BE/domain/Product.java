@@ -25,6 +25,8 @@ public class Product {
     private Double oldPrice;
     private Double saleRate;
     private Integer quantity;
+    // Stock được chia vào product_stock_shards (xem StockShardService)
+    private Boolean hot = false;
     @Column(columnDefinition = "MEDIUMTEXT")
     private String description;
     private Instant createdAt;
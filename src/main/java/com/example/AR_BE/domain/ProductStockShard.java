@@ -0,0 +1,30 @@
+package com.example.AR_BE.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Một phần stock của product "hot". Tổng stock = products.quantity + SUM(shard.quantity),
+ * checkout chỉ trừ 1 shard nên lock được chia ra nhiều row.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "product_stock_shards", uniqueConstraints = @UniqueConstraint(
+        name = "uk_product_stock_shards_product_shard", columnNames = { "product_id", "shard_no" }))
+public class ProductStockShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "shard_no", nullable = false)
+    private Integer shardNo;
+
+    @Column(nullable = false)
+    private Integer quantity;
+}
@@ -0,0 +1,30 @@
+package com.example.AR_BE.domain;
+
+import java.time.Instant;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Delta stock đã được InMemoryInventoryEngine chấp nhận nhưng chưa flush vào products.quantity.
+ * Được ghi/xóa bằng JDBC, entity chỉ để khai báo bảng.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_ledger", indexes = @Index(name = "idx_stock_ledger_product", columnList = "product_id"))
+public class StockLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Integer delta;
+
+    private Instant createdAt;
+}
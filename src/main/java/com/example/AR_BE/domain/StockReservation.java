@@ -0,0 +1,58 @@
+package com.example.AR_BE.domain;
+
+import java.time.Instant;
+import java.util.List;
+
+import com.example.AR_BE.utils.SecurityUtils;
+import com.example.AR_BE.utils.constants.ReservationStatusEnum;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Giữ hàng tạm thời (cart hold). Stock đã bị trừ khi tạo,
+ * được trả lại khi hết hạn / hủy, hoặc chuyển thành order.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_reservations")
+public class StockReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    @NotNull
+    private User user;
+
+    @OneToMany(mappedBy = "reservation", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<StockReservationItem> items;
+
+    @Enumerated(EnumType.STRING)
+    private ReservationStatusEnum status;
+
+    private Instant expiresAt;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+    private String createdBy;
+    private String updatedBy;
+
+    // ===== Audit =====
+    @PrePersist
+    public void handleCreate() {
+        this.createdBy = SecurityUtils.getCurrentUserLogin().orElse("");
+        this.createdAt = Instant.now();
+    }
+
+    @PreUpdate
+    public void handleUpdate() {
+        this.updatedBy = SecurityUtils.getCurrentUserLogin().orElse("");
+        this.updatedAt = Instant.now();
+    }
+}
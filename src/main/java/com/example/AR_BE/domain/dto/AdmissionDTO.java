@@ -0,0 +1,19 @@
+package com.example.AR_BE.domain.dto;
+
+import java.time.Instant;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class AdmissionDTO {
+    // Gửi lại trong header X-Admission-Token khi gọi /orders/create
+    private String token;
+    private String status;
+    // Có khi status = WAITING: vị trí trong hàng (1 = kế tiếp) và số giây ước tính
+    private Long position;
+    private Long etaSeconds;
+    // Có khi status = ADMITTED: phải tạo đơn trước thời điểm này
+    private Instant admittedUntil;
+}
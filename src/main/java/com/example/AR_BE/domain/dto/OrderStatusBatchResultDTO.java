@@ -0,0 +1,26 @@
+package com.example.AR_BE.domain.dto;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class OrderStatusBatchResultDTO {
+    private String status;
+    private int updated;
+    private int failed;
+    // Kết quả theo từng orderId, giữ thứ tự của request
+    private List<Item> results;
+
+    @Getter
+    @Setter
+    public static class Item {
+        private Long orderId;
+        // UPDATED | NOT_FOUND | REJECTED
+        private String outcome;
+        private String oldStatus;
+        private String message;
+    }
+}
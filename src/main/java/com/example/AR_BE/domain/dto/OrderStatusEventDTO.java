@@ -0,0 +1,20 @@
+package com.example.AR_BE.domain.dto;
+
+import java.time.Instant;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Payload gửi qua WebSocket (/user/queue/orders) khi đơn đổi trạng thái.
+ */
+@Getter
+@Setter
+public class OrderStatusEventDTO {
+    private Long orderId;
+    private Long userId;
+    // null khi đơn vừa được tạo
+    private String oldStatus;
+    private String status;
+    private Instant changedAt;
+}
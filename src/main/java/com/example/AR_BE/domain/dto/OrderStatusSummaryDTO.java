@@ -0,0 +1,24 @@
+package com.example.AR_BE.domain.dto;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class OrderStatusSummaryDTO {
+    private long totalOrders;
+    // null khi không yêu cầu withAmount
+    private Double totalAmount;
+    // Đủ mọi StatusEnum (status chưa có đơn → count = 0), theo thứ tự enum
+    private List<StatusCount> statuses;
+
+    @Getter
+    @Setter
+    public static class StatusCount {
+        private String status;
+        private long count;
+        private Double totalAmount;
+    }
+}
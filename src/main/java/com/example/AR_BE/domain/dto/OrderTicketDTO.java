@@ -0,0 +1,18 @@
+package com.example.AR_BE.domain.dto;
+
+import java.time.Instant;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class OrderTicketDTO {
+    private String ticketId;
+    private String status;
+    private Instant createdAt;
+    // Có khi status = COMPLETED
+    private OrderDTO order;
+    // Có khi status = FAILED
+    private String error;
+}
@@ -25,4 +25,8 @@ public class ProductDTO {
     private List<String> imageUrl;
     private ProductARModelDTO arModel;
     private CategoryDTO category;
+    // Stock được chia vào nhiều shard (product bán chạy)
+    private boolean hot;
+    // Số lượng đang được giữ bởi reservation ACTIVE (đã trừ khỏi quantity)
+    private int reservedQuantity;
 }
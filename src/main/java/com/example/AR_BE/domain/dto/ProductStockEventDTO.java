@@ -0,0 +1,22 @@
+package com.example.AR_BE.domain.dto;
+
+import java.time.Instant;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Payload gửi qua WebSocket (/topic/products/{id}): stock + giá hiện tại của product.
+ */
+@Getter
+@Setter
+public class ProductStockEventDTO {
+    private Long productId;
+    private int quantity;
+    private int reservedQuantity;
+    private Double oldPrice;
+    private Double saleRate;
+    // Giá bán hiện tại (PriceCalculator)
+    private double price;
+    private Instant updatedAt;
+}
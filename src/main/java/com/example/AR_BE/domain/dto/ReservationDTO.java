@@ -0,0 +1,16 @@
+package com.example.AR_BE.domain.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ReservationDTO {
+    private Long reservationId;
+    private String status;
+    private Instant expiresAt;
+    private List<ReservationItemDTO> items;
+}
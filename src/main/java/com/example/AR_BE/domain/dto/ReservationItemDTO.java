@@ -0,0 +1,15 @@
+package com.example.AR_BE.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationItemDTO {
+    private Long productId;
+    private Integer quantity;
+}
@@ -0,0 +1,37 @@
+package com.example.AR_BE.domain.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 1 dòng báo cáo doanh số (theo ngày / giờ / cả khoảng) cho 1 category hoặc product.
+ * net = placed - cancelled.
+ */
+@Getter
+@Setter
+public class SalesRollupDTO {
+    // Có khi báo cáo theo ngày
+    private LocalDate date;
+    // Có khi báo cáo theo giờ (đầu giờ, UTC)
+    private Instant hour;
+    private String dimension;
+    private Long dimensionId;
+    private String name;
+
+    private long placedOrders;
+    private long placedUnits;
+    private double placedRevenue;
+    private long cancelledOrders;
+    private long cancelledUnits;
+    private double cancelledRevenue;
+    private long deliveredOrders;
+    private long deliveredUnits;
+    private double deliveredRevenue;
+
+    private long netOrders;
+    private long netUnits;
+    private double netRevenue;
+}
@@ -0,0 +1,19 @@
+package com.example.AR_BE.domain.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class SalesRollupRebuildDTO {
+    private LocalDate from;
+    private LocalDate to;
+    private int days;
+    // Số đơn đã tính lại
+    private long orders;
+    // Các ngày rebuild lỗi (giữ nguyên rollup cũ), có thể chạy lại
+    private List<LocalDate> failedDays;
+}
@@ -0,0 +1,16 @@
+package com.example.AR_BE.domain.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockShardsDTO {
+    private Long productId;
+    private int totalQuantity;
+    private List<Integer> shards;
+}
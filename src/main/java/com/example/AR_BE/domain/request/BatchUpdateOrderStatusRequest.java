@@ -0,0 +1,19 @@
+package com.example.AR_BE.domain.request;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class BatchUpdateOrderStatusRequest {
+
+    @NotEmpty(message = "Danh sách orderIds không được để trống")
+    private List<Long> orderIds;
+
+    @NotBlank(message = "Status không được để trống")
+    private String status;
+}
@@ -9,4 +9,6 @@ import lombok.Setter;
 public class CreateOrderRequest {
     private String shippingAddress;
     private List<OrderItemRequest> items;
+    // Reservation đang giữ hàng cho đơn này (tùy chọn)
+    private Long reservationId;
 }
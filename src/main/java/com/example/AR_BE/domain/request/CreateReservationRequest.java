@@ -0,0 +1,14 @@
+package com.example.AR_BE.domain.request;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class CreateReservationRequest {
+    private List<OrderItemRequest> items;
+    // Số phút giữ hàng, null = mặc định (app.reservation.default-hold-minutes)
+    private Integer holdMinutes;
+}
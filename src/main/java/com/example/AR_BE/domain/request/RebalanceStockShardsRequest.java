@@ -0,0 +1,11 @@
+package com.example.AR_BE.domain.request;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class RebalanceStockShardsRequest {
+    // null = giữ nguyên số shard hiện tại
+    private Integer shardCount;
+}
@@ -44,6 +44,7 @@ public class RestLoginDTOResponse {
         private long id;
         private String email;
         private String name;
+        private String role;
     }
 
 }
\ No newline at end of file
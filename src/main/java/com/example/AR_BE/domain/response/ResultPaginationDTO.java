@@ -15,5 +15,9 @@ public class ResultPaginationDTO {
         private int pageSize;
         private int pages;
         private long total;
+        // Chế độ cursor: cursor của trang sau (null = hết), page/pages/total không được tính
+        private String nextCursor;
+        // Còn trang sau không; withTotal=false thì chỉ có field này, pages/total không được tính
+        private Boolean hasNext;
     }
 }
@@ -0,0 +1,76 @@
+package com.example.AR_BE.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.AR_BE.domain.OrderArchive;
+import com.example.AR_BE.repository.projection.OrderHeaderView;
+import com.example.AR_BE.repository.projection.OrderItemDetailView;
+import com.example.AR_BE.utils.constants.StatusEnum;
+
+/**
+ * Đọc orders_archive / order_items_archive, cùng projection với OrderRepository
+ * để OrderService trộn kết quả 2 nguồn.
+ */
+public interface OrderArchiveRepository extends JpaRepository<OrderArchive, Long> {
+
+    String HEADER_SELECT = "SELECT o.id AS id, o.userId AS userId, o.shippingAddress AS shippingAddress,"
+            + " o.totalAmount AS totalAmount, o.status AS status, o.createdAt AS createdAt,"
+            + " o.updatedAt AS updatedAt, o.createdBy AS createdBy, o.updatedBy AS updatedBy FROM OrderArchive o";
+
+    // Keyset (createdAt, id) DESC giống OrderRepository; offset qua OrderRepository.find*IdsWithArchive*
+    @Query(HEADER_SELECT + " WHERE o.userId = :userId AND o.status = :status AND"
+            + OrderRepository.AFTER_CURSOR + OrderRepository.KEYSET_ORDER)
+    List<OrderHeaderView> findHeadersByUserIdAndStatusAfter(@Param("userId") Long userId,
+            @Param("status") StatusEnum status, @Param("createdAt") Instant createdAt, @Param("id") Long id,
+            Pageable limit);
+
+    @Query(HEADER_SELECT + " WHERE o.status = :status AND" + OrderRepository.AFTER_CURSOR
+            + OrderRepository.KEYSET_ORDER)
+    List<OrderHeaderView> findHeadersByStatusAfter(@Param("status") StatusEnum status,
+            @Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable limit);
+
+    @Query(HEADER_SELECT + " WHERE" + OrderRepository.AFTER_CURSOR + OrderRepository.KEYSET_ORDER)
+    List<OrderHeaderView> findAllHeadersAfter(@Param("createdAt") Instant createdAt, @Param("id") Long id,
+            Pageable limit);
+
+    @Query(HEADER_SELECT + " WHERE o.id = :id")
+    Optional<OrderHeaderView> findHeaderById(@Param("id") Long id);
+
+    @Query(HEADER_SELECT + " WHERE o.id IN :ids")
+    List<OrderHeaderView> findHeadersByIdIn(@Param("ids") Collection<Long> ids);
+
+    long countByUserIdAndStatus(Long userId, StatusEnum status);
+
+    long countByStatus(StatusEnum status);
+
+    // [status, count(, sum)] giống OrderRepository
+    @Query("SELECT o.status, COUNT(o) FROM OrderArchive o WHERE o.userId = :userId GROUP BY o.status")
+    List<Object[]> countByUserIdGroupByStatus(@Param("userId") Long userId);
+
+    @Query("SELECT o.status, COUNT(o), COALESCE(SUM(o.totalAmount), 0) FROM OrderArchive o"
+            + " WHERE o.userId = :userId GROUP BY o.status")
+    List<Object[]> summarizeByUserIdGroupByStatus(@Param("userId") Long userId);
+
+    @Query("SELECT o.status, COUNT(o) FROM OrderArchive o GROUP BY o.status")
+    List<Object[]> countGroupByStatus();
+
+    @Query("SELECT o.status, COUNT(o), COALESCE(SUM(o.totalAmount), 0) FROM OrderArchive o GROUP BY o.status")
+    List<Object[]> summarizeGroupByStatus();
+
+    // Giống OrderItemRepository.findDetailsByOrderIdIn, đọc order_items_archive
+    @Query(value = "SELECT oi.order_id AS orderId, oi.product_id AS productId, p.name AS productName,"
+            + " oi.product_type AS productType, oi.quantity AS quantity,"
+            + " oi.price_at_purchase AS priceAtPurchase, p.old_price AS oldPrice,"
+            + " (SELECT pi.image_url FROM product_images pi WHERE pi.product_id = oi.product_id LIMIT 1) AS imageUrl"
+            + " FROM order_items_archive oi LEFT JOIN products p ON p.id = oi.product_id"
+            + " WHERE oi.order_id IN (:orderIds) ORDER BY oi.order_id, oi.id", nativeQuery = true)
+    List<OrderItemDetailView> findDetailsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+}
@@ -0,0 +1,29 @@
+package com.example.AR_BE.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.AR_BE.domain.OrderItem;
+import com.example.AR_BE.repository.projection.OrderItemDetailView;
+
+public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+
+    // Items của cả trang đơn trong 1 query; ảnh đầu tiên lấy bằng subquery LIMIT 1
+    // thay vì load cả collection product_images
+    @Query(value = "SELECT oi.order_id AS orderId, oi.product_id AS productId, p.name AS productName,"
+            + " oi.product_type AS productType, oi.quantity AS quantity,"
+            + " oi.price_at_purchase AS priceAtPurchase, p.old_price AS oldPrice,"
+            + " (SELECT pi.image_url FROM product_images pi WHERE pi.product_id = oi.product_id LIMIT 1) AS imageUrl"
+            + " FROM order_items oi LEFT JOIN products p ON p.id = oi.product_id"
+            + " WHERE oi.order_id IN (:orderIds) ORDER BY oi.order_id, oi.id", nativeQuery = true)
+    List<OrderItemDetailView> findDetailsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    // [productId, SUM(quantity)] của các đơn, dùng để hoàn stock gộp theo product
+    @Query("SELECT oi.product.id, SUM(oi.quantity) FROM OrderItem oi"
+            + " WHERE oi.order.id IN :orderIds GROUP BY oi.product.id")
+    List<Object[]> sumQuantityByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+}
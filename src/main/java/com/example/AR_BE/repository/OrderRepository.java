@@ -1,16 +1,27 @@
 package com.example.AR_BE.repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.AR_BE.domain.Order;
 import com.example.AR_BE.domain.User;
+import com.example.AR_BE.repository.projection.OrderHeaderView;
 import com.example.AR_BE.utils.constants.StatusEnum;
 
+import jakarta.persistence.LockModeType;
+
 public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
     List<Order> findByUserAndStatus(User user, StatusEnum status);
 
@@ -19,4 +30,128 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
     Page<Order> findByUserIdAndStatus(Long userId, StatusEnum status, Pageable pageable);
 
     Page<Order> findByStatus(StatusEnum status, Pageable pageable);
+
+    // ===== Projection cho danh sách / chi tiết đơn =====
+    String HEADER_SELECT = "SELECT o.id AS id, o.user.id AS userId, o.shippingAddress AS shippingAddress,"
+            + " o.totalAmount AS totalAmount, o.status AS status, o.createdAt AS createdAt,"
+            + " o.updatedAt AS updatedAt, o.createdBy AS createdBy, o.updatedBy AS updatedBy FROM Order o";
+
+    // Slice: lấy size + 1 dòng, không COUNT; total (nếu cần) lấy qua count* + CountCache
+    @Query(HEADER_SELECT + " WHERE o.user.id = :userId AND o.status = :status")
+    Slice<OrderHeaderView> findHeadersByUserIdAndStatus(@Param("userId") Long userId,
+            @Param("status") StatusEnum status, Pageable pageable);
+
+    @Query(HEADER_SELECT + " WHERE o.status = :status")
+    Slice<OrderHeaderView> findHeadersByStatus(@Param("status") StatusEnum status, Pageable pageable);
+
+    @Query(HEADER_SELECT)
+    Slice<OrderHeaderView> findAllHeaders(Pageable pageable);
+
+    long countByUserIdAndStatus(Long userId, StatusEnum status);
+
+    long countByStatus(StatusEnum status);
+
+    // ===== Đếm theo status (badge "Đơn của tôi", tổng của admin): [status, count(, sum)] =====
+    // Chỉ đọc idx_orders_user_status_created
+    @Query("SELECT o.status, COUNT(o) FROM Order o WHERE o.user.id = :userId GROUP BY o.status")
+    List<Object[]> countByUserIdGroupByStatus(@Param("userId") Long userId);
+
+    // Có SUM(total_amount) → phải đọc thêm row đơn
+    @Query("SELECT o.status, COUNT(o), COALESCE(SUM(o.totalAmount), 0) FROM Order o"
+            + " WHERE o.user.id = :userId GROUP BY o.status")
+    List<Object[]> summarizeByUserIdGroupByStatus(@Param("userId") Long userId);
+
+    @Query("SELECT o.status, COUNT(o) FROM Order o GROUP BY o.status")
+    List<Object[]> countGroupByStatus();
+
+    @Query("SELECT o.status, COUNT(o), COALESCE(SUM(o.totalAmount), 0) FROM Order o GROUP BY o.status")
+    List<Object[]> summarizeGroupByStatus();
+
+    // ===== Keyset: (createdAt, id) DESC, cursor null = trang đầu =====
+    String AFTER_CURSOR = " (:createdAt IS NULL OR o.createdAt < :createdAt"
+            + " OR (o.createdAt = :createdAt AND o.id < :id))";
+    String KEYSET_ORDER = " ORDER BY o.createdAt DESC, o.id DESC";
+
+    @Query(HEADER_SELECT + " WHERE o.user.id = :userId AND o.status = :status AND" + AFTER_CURSOR + KEYSET_ORDER)
+    List<OrderHeaderView> findHeadersByUserIdAndStatusAfter(@Param("userId") Long userId,
+            @Param("status") StatusEnum status, @Param("createdAt") Instant createdAt, @Param("id") Long id,
+            Pageable limit);
+
+    @Query(HEADER_SELECT + " WHERE o.status = :status AND" + AFTER_CURSOR + KEYSET_ORDER)
+    List<OrderHeaderView> findHeadersByStatusAfter(@Param("status") StatusEnum status,
+            @Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable limit);
+
+    @Query(HEADER_SELECT + " WHERE" + AFTER_CURSOR + KEYSET_ORDER)
+    List<OrderHeaderView> findAllHeadersAfter(@Param("createdAt") Instant createdAt, @Param("id") Long id,
+            Pageable limit);
+
+    @Query(HEADER_SELECT + " WHERE o.id = :id")
+    Optional<OrderHeaderView> findHeaderById(@Param("id") Long id);
+
+    // Đọc bản mới nhất (không theo snapshot của transaction) và khóa dòng
+    @Query(value = "SELECT status FROM orders WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<String> findStatusByIdForUpdate(@Param("id") Long id);
+
+    @Query(HEADER_SELECT + " WHERE o.id IN :ids")
+    List<OrderHeaderView> findHeadersByIdIn(@Param("ids") Collection<Long> ids);
+
+    // ===== Offset trên orders + orders_archive: chỉ trả về id của trang =====
+    // Mỗi nhánh đi index (…, created_at, id) và lấy tối đa :branchLimit (= offset + size + 1) dòng,
+    // UNION ALL rồi ORDER BY + LIMIT / OFFSET ngay trong SQL
+    String UNION_PAGE = ") u ORDER BY created_at DESC, id DESC LIMIT :limit OFFSET :offset";
+
+    @Query(value = "SELECT id FROM ("
+            + " (SELECT id, created_at FROM orders WHERE user_id = :userId AND status = :status"
+            + " ORDER BY created_at DESC, id DESC LIMIT :branchLimit)"
+            + " UNION ALL"
+            + " (SELECT id, created_at FROM orders_archive WHERE user_id = :userId AND status = :status"
+            + " ORDER BY created_at DESC, id DESC LIMIT :branchLimit)"
+            + UNION_PAGE, nativeQuery = true)
+    List<Long> findIdsWithArchiveByUserIdAndStatus(@Param("userId") Long userId, @Param("status") String status,
+            @Param("branchLimit") int branchLimit, @Param("limit") int limit, @Param("offset") int offset);
+
+    @Query(value = "SELECT id FROM ("
+            + " (SELECT id, created_at FROM orders WHERE status = :status"
+            + " ORDER BY created_at DESC, id DESC LIMIT :branchLimit)"
+            + " UNION ALL"
+            + " (SELECT id, created_at FROM orders_archive WHERE status = :status"
+            + " ORDER BY created_at DESC, id DESC LIMIT :branchLimit)"
+            + UNION_PAGE, nativeQuery = true)
+    List<Long> findIdsWithArchiveByStatus(@Param("status") String status, @Param("branchLimit") int branchLimit,
+            @Param("limit") int limit, @Param("offset") int offset);
+
+    @Query(value = "SELECT id FROM ("
+            + " (SELECT id, created_at FROM orders ORDER BY created_at DESC, id DESC LIMIT :branchLimit)"
+            + " UNION ALL"
+            + " (SELECT id, created_at FROM orders_archive ORDER BY created_at DESC, id DESC LIMIT :branchLimit)"
+            + UNION_PAGE, nativeQuery = true)
+    List<Long> findAllIdsWithArchive(@Param("branchLimit") int branchLimit, @Param("limit") int limit,
+            @Param("offset") int offset);
+
+    // Compare-and-set: chỉ đổi khi status hiện tại nằm trong allowed. Trả về số dòng đổi (0 / 1)
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :newStatus, o.updatedAt = :updatedAt, o.updatedBy = :updatedBy"
+            + " WHERE o.id = :id AND o.status IN :allowed")
+    int compareAndSetStatus(@Param("id") Long id, @Param("allowed") Collection<StatusEnum> allowed,
+            @Param("newStatus") StatusEnum newStatus, @Param("updatedAt") Instant updatedAt,
+            @Param("updatedBy") String updatedBy);
+
+    // [id, user_id] các đơn PENDING tạo trước cutoff, cũ nhất trước (idx_orders_status_created).
+    // SKIP LOCKED: đơn đang bị request khác lock (hủy / cập nhật) để lại lần sau
+    @Query(value = "SELECT id, user_id FROM orders WHERE status = 'PENDING' AND created_at < :cutoff"
+            + " ORDER BY created_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Object[]> findStalePendingForUpdate(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+
+    // ===== Cập nhật status hàng loạt =====
+    // Lock theo thứ tự id để 2 batch trùng đơn không bị deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids ORDER BY o.id")
+    List<Order> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :newStatus, o.updatedAt = :updatedAt, o.updatedBy = :updatedBy"
+            + " WHERE o.id IN :ids AND o.status = :oldStatus")
+    int updateStatusByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("oldStatus") StatusEnum oldStatus,
+            @Param("newStatus") StatusEnum newStatus, @Param("updatedAt") Instant updatedAt,
+            @Param("updatedBy") String updatedBy);
 }
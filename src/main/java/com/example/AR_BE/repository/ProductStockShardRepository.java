@@ -0,0 +1,51 @@
+package com.example.AR_BE.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.AR_BE.domain.ProductStockShard;
+
+import jakarta.persistence.LockModeType;
+
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, Long> {
+
+    List<ProductStockShard> findByProductIdOrderByShardNo(Long productId);
+
+    // [shardNo, quantity] - đọc không lock, không đưa entity vào persistence context
+    @Query("SELECT s.shardNo, s.quantity FROM ProductStockShard s WHERE s.productId = :productId")
+    List<Object[]> findShardQuantities(@Param("productId") Long productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStockShard s WHERE s.productId = :productId ORDER BY s.shardNo")
+    List<ProductStockShard> findAllByProductIdForUpdate(@Param("productId") Long productId);
+
+    @Modifying
+    @Query("UPDATE ProductStockShard s SET s.quantity = s.quantity - :quantity"
+            + " WHERE s.productId = :productId AND s.shardNo = :shardNo AND s.quantity >= :quantity")
+    int decrementShard(@Param("productId") Long productId, @Param("shardNo") int shardNo,
+            @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE ProductStockShard s SET s.quantity = s.quantity + :quantity"
+            + " WHERE s.productId = :productId AND s.shardNo = :shardNo")
+    int incrementShard(@Param("productId") Long productId, @Param("shardNo") int shardNo,
+            @Param("quantity") int quantity);
+
+    // [productId, SUM(quantity)]
+    @Query("SELECT s.productId, SUM(s.quantity) FROM ProductStockShard s WHERE s.productId IN :ids GROUP BY s.productId")
+    List<Object[]> sumQuantityByProductIdIn(@Param("ids") Collection<Long> ids);
+
+    // [productId, số shard]
+    @Query("SELECT s.productId, COUNT(s) FROM ProductStockShard s GROUP BY s.productId")
+    List<Object[]> countShardsByProduct();
+
+    @Modifying
+    @Query("DELETE FROM ProductStockShard s WHERE s.productId = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+}
@@ -0,0 +1,24 @@
+package com.example.AR_BE.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.AR_BE.domain.StockReservationItem;
+import com.example.AR_BE.utils.constants.ReservationStatusEnum;
+
+public interface StockReservationItemRepository extends JpaRepository<StockReservationItem, Long> {
+
+    // [productId, quantity] của các reservation
+    @Query("SELECT i.product.id, i.quantity FROM StockReservationItem i WHERE i.reservation.id IN :reservationIds")
+    List<Object[]> findQuantitiesByReservationIdIn(@Param("reservationIds") Collection<Long> reservationIds);
+
+    // [productId, SUM(quantity)] đang được giữ
+    @Query("SELECT i.product.id, SUM(i.quantity) FROM StockReservationItem i"
+            + " WHERE i.reservation.status = :status AND i.product.id IN :productIds GROUP BY i.product.id")
+    List<Object[]> sumQuantityByStatusAndProductIdIn(@Param("status") ReservationStatusEnum status,
+            @Param("productIds") Collection<Long> productIds);
+}
@@ -0,0 +1,40 @@
+package com.example.AR_BE.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.AR_BE.domain.StockReservation;
+import com.example.AR_BE.utils.constants.ReservationStatusEnum;
+
+import jakarta.persistence.LockModeType;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.id = :id")
+    Optional<StockReservation> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.id IN :ids AND r.status = :status"
+            + " AND r.expiresAt <= :now ORDER BY r.id")
+    List<StockReservation> findExpiredForUpdate(@Param("ids") Collection<Long> ids,
+            @Param("status") ReservationStatusEnum status, @Param("now") Instant now);
+
+    // Quét dự phòng: reservation ACTIVE quá hạn mà expiry wheel không xử lý (node giữ nó đã chết)
+    @Query("SELECT r.id FROM StockReservation r WHERE r.status = :status AND r.expiresAt <= :cutoff"
+            + " ORDER BY r.expiresAt")
+    List<Long> findIdsByStatusAndExpiresAtBefore(@Param("status") ReservationStatusEnum status,
+            @Param("cutoff") Instant cutoff, Pageable limit);
+
+    // [id, expiresAt]
+    @Query("SELECT r.id, r.expiresAt FROM StockReservation r WHERE r.status = :status")
+    List<Object[]> findIdAndExpiryByStatus(@Param("status") ReservationStatusEnum status);
+}
@@ -0,0 +1,28 @@
+package com.example.AR_BE.repository.projection;
+
+import java.time.Instant;
+
+import com.example.AR_BE.utils.constants.StatusEnum;
+
+/**
+ * Các cột của orders cần cho danh sách / chi tiết đơn (không load entity, không load items).
+ */
+public interface OrderHeaderView {
+    Long getId();
+
+    Long getUserId();
+
+    String getShippingAddress();
+
+    Double getTotalAmount();
+
+    StatusEnum getStatus();
+
+    Instant getCreatedAt();
+
+    Instant getUpdatedAt();
+
+    String getCreatedBy();
+
+    String getUpdatedBy();
+}
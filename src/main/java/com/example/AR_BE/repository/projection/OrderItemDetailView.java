@@ -0,0 +1,22 @@
+package com.example.AR_BE.repository.projection;
+
+/**
+ * 1 dòng order_items kèm tên, giá gốc và ảnh đầu tiên của product.
+ */
+public interface OrderItemDetailView {
+    Long getOrderId();
+
+    Long getProductId();
+
+    String getProductName();
+
+    String getProductType();
+
+    Integer getQuantity();
+
+    Double getPriceAtPurchase();
+
+    Double getOldPrice();
+
+    String getImageUrl();
+}
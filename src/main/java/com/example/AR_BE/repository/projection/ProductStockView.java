@@ -0,0 +1,16 @@
+package com.example.AR_BE.repository.projection;
+
+/**
+ * Các cột của products cần cho broadcast stock / giá (không load entity, category, AR model).
+ */
+public interface ProductStockView {
+    Long getId();
+
+    Integer getQuantity();
+
+    Boolean getHot();
+
+    Double getOldPrice();
+
+    Double getSaleRate();
+}
@@ -0,0 +1,281 @@
+package com.example.AR_BE.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.AR_BE.domain.IdempotencyKey;
+import com.example.AR_BE.repository.IdempotencyKeyRepository;
+import com.example.AR_BE.utils.SecurityUtils;
+import com.example.AR_BE.utils.constants.IdempotencyStatusEnum;
+import com.example.AR_BE.utils.exception.IdInvalidException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Chạy một thao tác đúng 1 lần cho mỗi (user, Idempotency-Key).
+ *
+ * - Cache trong RAM giữ các key đang chạy (future) và đã xong (response JSON),
+ *   request trùng đồng thời chờ future thay vì chạy lại.
+ * - Bảng idempotency_keys giữ fingerprint + response để replay sau restart.
+ *   Key được claim (IN_PROGRESS) ở transaction riêng, response được lưu
+ *   cùng transaction với thao tác nên không có trạng thái "đã tạo order
+ *   nhưng chưa lưu response".
+ * - Claim IN_PROGRESS có lease riêng (dài hơn mọi thao tác), chỉ để dọn claim
+ *   của instance bị crash; request trùng trên instance khác poll row trong DB
+ *   tới wait-timeout thay vì báo lỗi ngay.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate claimTransaction;
+    private final TransactionTemplate executeTransaction;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${app.idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    @Value("${app.idempotency.in-progress-lease-ms:600000}")
+    private long inProgressLeaseMs;
+
+    @Value("${app.idempotency.poll-interval-ms:100}")
+    private long pollIntervalMs;
+
+    @Value("${app.idempotency.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.claimTransaction = new TransactionTemplate(transactionManager);
+        this.claimTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.executeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // Key đang chạy hoặc đã xong trong cache
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<String> response = new CompletableFuture<>();
+        private volatile Instant expiresAt = Instant.MAX;
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * @param idempotencyKey giá trị header Idempotency-Key
+     * @param request        request body, dùng để tính fingerprint
+     * @param type           kiểu response (để đọc lại từ JSON)
+     * @param action         thao tác thật, chạy trong transaction cùng với việc lưu response
+     */
+    public <T> T execute(String idempotencyKey, Object request, Class<T> type, Supplier<T> action) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IdInvalidException("Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+        String user = SecurityUtils.getCurrentUserLogin()
+                .orElseThrow(() -> new RuntimeException("User not logged in"));
+        String scopedKey = user + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+
+        // 1. Front cache: key đã có thì chờ / replay, không chạm DB
+        Entry mine = new Entry(fingerprint);
+        while (true) {
+            Entry existing = cache.putIfAbsent(scopedKey, mine);
+            if (existing == null) {
+                break;
+            }
+            if (existing.expiresAt.isBefore(Instant.now())) {
+                cache.remove(scopedKey, existing);
+                continue;
+            }
+            checkFingerprint(existing.fingerprint, fingerprint);
+            return read(await(existing.response), type);
+        }
+
+        try {
+            // 2. Claim key trong DB (hoặc lấy response đã lưu)
+            Optional<String> stored = claim(scopedKey, fingerprint);
+            String json;
+            Instant expiresAt;
+            if (stored.isPresent()) {
+                json = stored.get();
+                expiresAt = idempotencyKeyRepository.findById(scopedKey)
+                        .map(IdempotencyKey::getExpiresAt)
+                        .orElse(Instant.now());
+            } else {
+                // 3. Chạy thao tác + lưu response trong cùng 1 transaction
+                expiresAt = Instant.now().plus(Duration.ofHours(ttlHours));
+                try {
+                    json = executeTransaction.execute(status -> {
+                        String result = write(action.get());
+                        IdempotencyKey key = idempotencyKeyRepository.findById(scopedKey)
+                                .filter(k -> k.getStatus() == IdempotencyStatusEnum.IN_PROGRESS)
+                                .orElseThrow(() -> new IllegalStateException("Idempotency key lost"));
+                        key.setStatus(IdempotencyStatusEnum.COMPLETED);
+                        key.setResponse(result);
+                        key.setExpiresAt(expiresAt);
+                        idempotencyKeyRepository.save(key);
+                        return result;
+                    });
+                } catch (RuntimeException e) {
+                    // Thao tác lỗi → bỏ claim để client có thể retry
+                    claimTransaction.executeWithoutResult(status -> idempotencyKeyRepository.deleteById(scopedKey));
+                    throw e;
+                }
+            }
+
+            mine.expiresAt = expiresAt;
+            mine.response.complete(json);
+            if (cache.size() > cacheMaxEntries) {
+                // Cache đầy → chỉ giữ trong DB
+                cache.remove(scopedKey, mine);
+            }
+            return read(json, type);
+        } catch (RuntimeException e) {
+            cache.remove(scopedKey, mine);
+            mine.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Xóa key hết hạn trong cache và DB. Claim IN_PROGRESS chỉ hết hạn sau
+     * in-progress-lease-ms nên không bị xóa khi thao tác còn đang chạy.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        cache.entrySet().removeIf(e -> e.getValue().expiresAt.isBefore(now));
+        claimTransaction.executeWithoutResult(status -> idempotencyKeyRepository.deleteExpired(now));
+    }
+
+    // Empty = vừa claim được, phải chạy thao tác; có giá trị = response đã lưu
+    private Optional<String> claim(String scopedKey, String fingerprint) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+        while (true) {
+            Optional<String> claimed = tryClaim(scopedKey, fingerprint);
+            if (claimed != null) {
+                return claimed;
+            }
+            // Instance khác đang chạy key này → poll DB tới khi nó xong / bỏ claim
+            if (System.nanoTime() >= deadline) {
+                throw new IdInvalidException("Request with this Idempotency-Key is still being processed");
+            }
+            try {
+                Thread.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // null = instance khác đang giữ claim còn hạn
+    private Optional<String> tryClaim(String scopedKey, String fingerprint) {
+        try {
+            return claimTransaction.execute(status -> {
+                Optional<IdempotencyKey> existing = idempotencyKeyRepository.findById(scopedKey);
+                if (existing.isPresent()) {
+                    IdempotencyKey key = existing.get();
+                    if (key.getExpiresAt().isAfter(Instant.now())) {
+                        checkFingerprint(key.getFingerprint(), fingerprint);
+                        if (key.getStatus() == IdempotencyStatusEnum.COMPLETED) {
+                            return Optional.of(key.getResponse());
+                        }
+                        return null;
+                    }
+                    idempotencyKeyRepository.delete(key);
+                    idempotencyKeyRepository.flush();
+                }
+
+                IdempotencyKey key = new IdempotencyKey();
+                key.setScopedKey(scopedKey);
+                key.setFingerprint(fingerprint);
+                key.setStatus(IdempotencyStatusEnum.IN_PROGRESS);
+                key.setCreatedAt(Instant.now());
+                // Claim bị bỏ dở (crash) sẽ hết hạn sau lease, không phải sau wait-timeout
+                key.setExpiresAt(Instant.now().plusMillis(inProgressLeaseMs));
+                idempotencyKeyRepository.saveAndFlush(key);
+                return Optional.<String>empty();
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Instance khác vừa claim cùng key
+            return null;
+        }
+    }
+
+    private String await(CompletableFuture<String> response) {
+        try {
+            return response.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdInvalidException("Request with this Idempotency-Key is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void checkFingerprint(String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IdInvalidException("Idempotency-Key was already used with a different request");
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new RuntimeException("Cannot fingerprint request", e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Cannot serialize response", e);
+        }
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json.getBytes(StandardCharsets.UTF_8), type);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read stored response", e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.AR_BE.service;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.AR_BE.utils.constants.StatusEnum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Chuyển đơn đã kết thúc (DELIVERED / CANCELLED, không đổi trạng thái được nữa)
+ * tạo trước app.orders.archive.min-age-days sang orders_archive / order_items_archive.
+ *
+ * Mỗi batch 1 transaction: lock đơn bằng FOR UPDATE SKIP LOCKED (nhiều instance
+ * chạy song song lấy các batch khác nhau), INSERT ... SELECT sang archive rồi
+ * DELETE khỏi bảng gốc. OrderService đọc trộn 2 nguồn nên tổng số đơn không đổi.
+ */
+@Service
+public class OrderArchiveService {
+
+    private static final List<StatusEnum> TERMINAL = List.of(StatusEnum.DELIVERED, StatusEnum.CANCELLED);
+
+    // orders.created_at được Hibernate ghi theo UTC
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter archivedCounter;
+
+    @Value("${app.orders.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.orders.archive.min-age-days:90}")
+    private long minAgeDays;
+
+    @Value("${app.orders.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.orders.archive.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    public OrderArchiveService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archivedCounter = meterRegistry.counter("orders.archive.archived");
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.archive.interval-ms:300000}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(Duration.ofDays(minAgeDays));
+        for (StatusEnum status : TERMINAL) {
+            // Giới hạn số batch mỗi lần chạy để không chiếm scheduler quá lâu
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                Integer moved = transactionTemplate.execute(tx -> archiveBatch(status, cutoff));
+                if (moved == null || moved < batchSize) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // @return số đơn đã chuyển
+    private int archiveBatch(StatusEnum status, Instant cutoff) {
+        // 1. Lock 1 batch đơn cũ nhất (idx_orders_status_created), bỏ qua đơn instance khác đang giữ
+        List<Long> ids = new ArrayList<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT id FROM orders WHERE status = ? AND created_at < ?"
+                    + " ORDER BY created_at, id LIMIT ? FOR UPDATE SKIP LOCKED");
+            ps.setString(1, status.name());
+            ps.setTimestamp(2, Timestamp.from(cutoff), Calendar.getInstance(UTC));
+            ps.setInt(3, batchSize);
+            return ps;
+        }, (rs, rowNum) -> rs.getLong(1)));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Map<String, Object> params = Map.of("ids", ids);
+
+        // 2. Copy sang archive
+        namedJdbcTemplate.update("INSERT INTO orders_archive (id, user_id, total_amount, shipping_address, status,"
+                + " created_at, updated_at, created_by, updated_by, archived_at)"
+                + " SELECT id, user_id, total_amount, shipping_address, status,"
+                + " created_at, updated_at, created_by, updated_by, UTC_TIMESTAMP(6)"
+                + " FROM orders WHERE id IN (:ids)", params);
+        namedJdbcTemplate.update("INSERT INTO order_items_archive (id, order_id, product_id, quantity,"
+                + " price_at_purchase, product_type)"
+                + " SELECT id, order_id, product_id, quantity, price_at_purchase, product_type"
+                + " FROM order_items WHERE order_id IN (:ids)", params);
+
+        // 3. Xóa khỏi bảng nóng (items trước vì FK)
+        namedJdbcTemplate.update("DELETE FROM order_items WHERE order_id IN (:ids)", params);
+        namedJdbcTemplate.update("DELETE FROM orders WHERE id IN (:ids)", params);
+
+        archivedCounter.increment(ids.size());
+        return ids.size();
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.AR_BE.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Semaphore;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.AR_BE.utils.constants.RoleEnum;
+import com.example.AR_BE.utils.constants.StatusEnum;
+import com.example.AR_BE.utils.exception.IdInvalidException;
+import com.example.AR_BE.utils.exception.TooManyRequestsException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Export đơn hàng (CSV / NDJSON) cho ADMIN.
+ *
+ * Đọc bằng result set streaming của MySQL (fetchSize = Integer.MIN_VALUE,
+ * đọc từng dòng từ socket) và ghi thẳng ra response qua buffer cố định, không
+ * tạo entity / list kết quả → bộ nhớ không tăng theo số đơn.
+ * Mỗi export giữ 1 connection suốt thời gian chạy nên số export đồng thời
+ * bị giới hạn (app.orders.export.max-concurrent), vượt → 429.
+ * Đơn đã archive (orders_archive) được ghi trước, sau đó tới bảng orders.
+ */
+@Service
+public class OrderExportService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private static final String[] COLUMNS = { "id", "user_id", "user_email", "status", "total_amount",
+            "shipping_address", "created_at", "updated_at", "created_by", "updated_by" };
+
+    // orders.created_at / updated_at được Hibernate ghi theo UTC
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    // Flush xuống client sau mỗi N dòng để client nhận dần
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final JsonFactory jsonFactory;
+    private final UserCache userCache;
+    private final Semaphore running;
+    private final ZoneId zone;
+
+    public OrderExportService(DataSource dataSource, ObjectMapper objectMapper, UserCache userCache,
+            @Value("${app.orders.export.max-concurrent:2}") int maxConcurrent,
+            @Value("${app.reports.zone:Asia/Ho_Chi_Minh}") String zone) {
+        // Connector/J: fetchSize = Integer.MIN_VALUE → stream từng dòng thay vì đọc hết vào RAM
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.jsonFactory = objectMapper.getFactory();
+        this.userCache = userCache;
+        this.running = new Semaphore(maxConcurrent);
+        this.zone = ZoneId.of(zone);
+    }
+
+    /**
+     * Validate + check quyền ngay trên request thread, trả body ghi dần khi MVC gọi.
+     *
+     * @param status null = mọi status
+     * @param from   ngày tạo đơn từ (theo app.reports.zone), null = không giới hạn
+     * @param to     ngày tạo đơn đến (gồm cả ngày to), null = không giới hạn
+     */
+    public StreamingResponseBody export(String status, LocalDate from, LocalDate to, String format) {
+        // 1. Check role ADMIN
+        if (userCache.currentUser().getRoleEnum() != RoleEnum.ADMIN) {
+            throw new IdInvalidException("Chỉ ADMIN mới có quyền export đơn hàng");
+        }
+
+        // 2. Validate tham số
+        if (!FORMAT_CSV.equals(format) && !FORMAT_NDJSON.equals(format)) {
+            throw new IdInvalidException("format phải là csv hoặc ndjson");
+        }
+        StatusEnum statusEnum = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                statusEnum = StatusEnum.valueOf(status.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IdInvalidException("Trạng thái không hợp lệ: " + status);
+            }
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IdInvalidException("Khoảng ngày không hợp lệ");
+        }
+
+        // 3. Giữ 1 suất export (nhả khi ghi xong / lỗi)
+        if (!running.tryAcquire()) {
+            throw new TooManyRequestsException("Too many exports running, please retry later");
+        }
+
+        // 4. Query theo (status, created_at, id) / (created_at, id) → đọc theo index, không filesort
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (statusEnum != null) {
+            where.append(" AND o.status = ?");
+            args.add(statusEnum.name());
+        }
+        if (from != null) {
+            where.append(" AND o.created_at >= ?");
+            args.add(Timestamp.from(from.atStartOfDay(zone).toInstant()));
+        }
+        if (to != null) {
+            where.append(" AND o.created_at < ?");
+            args.add(Timestamp.from(to.plusDays(1).atStartOfDay(zone).toInstant()));
+        }
+        List<String> queries = new ArrayList<>();
+        // Chỉ DELIVERED / CANCELLED mới bị archive
+        if (statusEnum == null || statusEnum == StatusEnum.DELIVERED || statusEnum == StatusEnum.CANCELLED) {
+            queries.add(query("orders_archive", where));
+        }
+        queries.add(query("orders", where));
+
+        return out -> {
+            try {
+                write(queries, args, format, out);
+            } finally {
+                running.release();
+            }
+        };
+    }
+
+    private static String query(String table, CharSequence where) {
+        return "SELECT o.id, o.user_id, u.email, o.status, o.total_amount, "
+                + "o.shipping_address, o.created_at, o.updated_at, o.created_by, o.updated_by "
+                + "FROM " + table + " o LEFT JOIN users u ON u.id = o.user_id" + where
+                + " ORDER BY o.created_at, o.id";
+    }
+
+    private void write(List<String> queries, List<Object> args, String format, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        JsonGenerator json = FORMAT_NDJSON.equals(format) ? jsonFactory.createGenerator(writer) : null;
+        if (json != null) {
+            json.setRootValueSeparator(null);
+        } else {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\n");
+        }
+
+        int[] rows = { 0 };
+        try {
+            for (String query : queries) {
+                streamQuery(query, args, writer, json, rows);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (json != null) {
+            json.flush();
+        }
+        writer.flush();
+    }
+
+    // Mỗi query 1 result set streaming (Connector/J không cho mở query khác khi đang stream)
+    private void streamQuery(String query, List<Object> args, Writer writer, JsonGenerator json, int[] rows) {
+        streamingJdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            for (int i = 0; i < args.size(); i++) {
+                Object arg = args.get(i);
+                if (arg instanceof Timestamp timestamp) {
+                    ps.setTimestamp(i + 1, timestamp, Calendar.getInstance(UTC));
+                } else {
+                    ps.setObject(i + 1, arg);
+                }
+            }
+            return ps;
+        }, rs -> {
+            try {
+                if (json != null) {
+                    writeJson(rs, json);
+                } else {
+                    writeCsv(rs, writer);
+                }
+                if (++rows[0] % FLUSH_EVERY_ROWS == 0) {
+                    if (json != null) {
+                        json.flush();
+                    }
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                // Client ngắt kết nối → dừng đọc
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void writeCsv(ResultSet rs, Writer writer) throws SQLException, IOException {
+        writer.write(Long.toString(rs.getLong("id")));
+        writer.write(',');
+        writer.write(nullable(rs.getObject("user_id")));
+        writer.write(',');
+        writer.write(csv(rs.getString("email")));
+        writer.write(',');
+        writer.write(csv(rs.getString("status")));
+        writer.write(',');
+        writer.write(nullable(rs.getObject("total_amount")));
+        writer.write(',');
+        writer.write(csv(rs.getString("shipping_address")));
+        writer.write(',');
+        writer.write(instant(rs, "created_at"));
+        writer.write(',');
+        writer.write(instant(rs, "updated_at"));
+        writer.write(',');
+        writer.write(csv(rs.getString("created_by")));
+        writer.write(',');
+        writer.write(csv(rs.getString("updated_by")));
+        writer.write('\n');
+    }
+
+    private void writeJson(ResultSet rs, JsonGenerator json) throws SQLException, IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", rs.getLong("id"));
+        long userId = rs.getLong("user_id");
+        if (rs.wasNull()) {
+            json.writeNullField("user_id");
+        } else {
+            json.writeNumberField("user_id", userId);
+        }
+        json.writeStringField("user_email", rs.getString("email"));
+        json.writeStringField("status", rs.getString("status"));
+        double total = rs.getDouble("total_amount");
+        if (rs.wasNull()) {
+            json.writeNullField("total_amount");
+        } else {
+            json.writeNumberField("total_amount", total);
+        }
+        json.writeStringField("shipping_address", rs.getString("shipping_address"));
+        json.writeStringField("created_at", emptyToNull(instant(rs, "created_at")));
+        json.writeStringField("updated_at", emptyToNull(instant(rs, "updated_at")));
+        json.writeStringField("created_by", rs.getString("created_by"));
+        json.writeStringField("updated_by", rs.getString("updated_by"));
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static String instant(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column, Calendar.getInstance(UTC));
+        return timestamp == null ? "" : timestamp.toInstant().toString();
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String nullable(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    // RFC 4180: bọc "..." khi có dấu phẩy, ngoặc kép hoặc xuống dòng
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
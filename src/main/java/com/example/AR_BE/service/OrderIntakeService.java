@@ -0,0 +1,269 @@
+package com.example.AR_BE.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.AR_BE.domain.dto.OrderDTO;
+import com.example.AR_BE.domain.dto.OrderTicketDTO;
+import com.example.AR_BE.domain.request.CreateOrderRequest;
+import com.example.AR_BE.domain.request.OrderItemRequest;
+import com.example.AR_BE.utils.SecurityUtils;
+import com.example.AR_BE.utils.constants.OrderTicketStatusEnum;
+import com.example.AR_BE.utils.exception.IdInvalidException;
+import com.example.AR_BE.utils.exception.TooManyRequestsException;
+import com.example.AR_BE.validator.OrderValidator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Nhận order bất đồng bộ (app.orders.async.enabled=true).
+ *
+ * Controller chỉ validate hình dạng request rồi đưa vào hàng đợi có giới hạn
+ * và trả 202 + ticket; hàng đợi đầy → 429. Các worker (virtual thread) lấy
+ * ticket theo micro-batch và tạo cả batch trong 1 transaction; nếu batch lỗi
+ * thì rollback và chạy lại từng ticket trong transaction riêng để chỉ
+ * ticket lỗi bị FAILED.
+ */
+@Service
+public class OrderIntakeService {
+
+    private final OrderService orderService;
+    private final OrderValidator orderValidator;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Ticket> queue;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final boolean enabled;
+
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Counter completedCounter;
+    private final Counter failedCounter;
+    private final Timer batchTimer;
+
+    private volatile boolean running;
+
+    @Value("${app.orders.async.workers:4}")
+    private int workerCount;
+
+    @Value("${app.orders.async.batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.orders.async.ticket-ttl-minutes:30}")
+    private long ticketTtlMinutes;
+
+    public OrderIntakeService(OrderService orderService, OrderValidator orderValidator,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.orders.async.enabled:false}") boolean enabled,
+            @Value("${app.orders.async.queue-capacity:1000}") int queueCapacity) {
+        this.orderService = orderService;
+        this.orderValidator = orderValidator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        meterRegistry.gauge("orders.intake.queue.depth", queue, BlockingQueue::size);
+        meterRegistry.gauge("orders.intake.queue.remaining", queue, BlockingQueue::remainingCapacity);
+        this.acceptedCounter = meterRegistry.counter("orders.intake.accepted");
+        this.rejectedCounter = meterRegistry.counter("orders.intake.rejected");
+        this.completedCounter = meterRegistry.counter("orders.intake.completed");
+        this.failedCounter = meterRegistry.counter("orders.intake.failed");
+        this.batchTimer = meterRegistry.timer("orders.intake.batch");
+    }
+
+    private static final class Ticket {
+        private final String id = UUID.randomUUID().toString();
+        private final Instant createdAt = Instant.now();
+        private final CreateOrderRequest request;
+        // Người tạo ticket, worker chạy createOrder dưới quyền user này
+        private final Authentication authentication;
+        private volatile OrderTicketStatusEnum status = OrderTicketStatusEnum.QUEUED;
+        private volatile OrderDTO order;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private Ticket(CreateOrderRequest request, Authentication authentication) {
+            this.request = request;
+            this.authentication = authentication;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("order-intake-" + i).start(this::runWorker));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Validate hình dạng request rồi đưa vào hàng đợi.
+     * Stock, giá, user... được kiểm tra khi worker xử lý.
+     */
+    public OrderTicketDTO submit(CreateOrderRequest req) {
+        orderValidator.validateRequest(req);
+        for (OrderItemRequest itemReq : req.getItems()) {
+            orderValidator.validateItem(itemReq);
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Ticket ticket = new Ticket(req, authentication);
+        tickets.put(ticket.id, ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.id);
+            rejectedCounter.increment();
+            throw new TooManyRequestsException("Order queue is full, please retry later");
+        }
+        acceptedCounter.increment();
+        return toDTO(ticket);
+    }
+
+    public OrderTicketDTO getTicket(String ticketId) {
+        Ticket ticket = tickets.get(ticketId);
+        String username = SecurityUtils.getCurrentUserLogin().orElse(null);
+        if (ticket == null || username == null || !username.equals(ticket.authentication.getName())) {
+            throw new IdInvalidException("Ticket not found");
+        }
+        return toDTO(ticket);
+    }
+
+    /**
+     * Xóa ticket đã xong quá TTL.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeFinishedTickets() {
+        Instant threshold = Instant.now().minus(Duration.ofMinutes(ticketTtlMinutes));
+        tickets.values().removeIf(t -> t.finishedAt != null && t.finishedAt.isBefore(threshold));
+    }
+
+    private void runWorker() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Ticket first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                batchTimer.record(() -> processBatch(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void processBatch(List<Ticket> batch) {
+        batch.forEach(t -> t.status = OrderTicketStatusEnum.PROCESSING);
+        // Các đơn trong batch giữ lock chung 1 transaction → xếp theo productId nhỏ nhất
+        // để các worker lock products theo cùng thứ tự, giảm deadlock giữa các batch
+        batch.sort(Comparator.comparingLong(t -> minProductId(t.request)));
+
+        // 1. Cả batch trong 1 transaction
+        try {
+            List<OrderDTO> orders = transactionTemplate.execute(status -> {
+                List<OrderDTO> created = new ArrayList<>();
+                for (Ticket ticket : batch) {
+                    created.add(createAs(ticket));
+                }
+                return created;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), orders.get(i));
+            }
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+        }
+
+        // 2. Batch lỗi → chạy lại từng ticket
+        for (Ticket ticket : batch) {
+            try {
+                complete(ticket, transactionTemplate.execute(status -> createAs(ticket)));
+            } catch (RuntimeException e) {
+                fail(ticket, e);
+            }
+        }
+    }
+
+    private static long minProductId(CreateOrderRequest req) {
+        return req.getItems().stream().mapToLong(OrderItemRequest::getProductId).min().orElse(0);
+    }
+
+    private OrderDTO createAs(Ticket ticket) {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(ticket.authentication);
+        SecurityContextHolder.setContext(context);
+        try {
+            return orderService.convertToDTO(orderService.createOrder(ticket.request));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private void complete(Ticket ticket, OrderDTO order) {
+        ticket.order = order;
+        ticket.status = OrderTicketStatusEnum.COMPLETED;
+        ticket.finishedAt = Instant.now();
+        completedCounter.increment();
+    }
+
+    private void fail(Ticket ticket, RuntimeException e) {
+        ticket.error = e.getMessage();
+        ticket.status = OrderTicketStatusEnum.FAILED;
+        ticket.finishedAt = Instant.now();
+        failedCounter.increment();
+    }
+
+    private OrderTicketDTO toDTO(Ticket ticket) {
+        OrderTicketDTO dto = new OrderTicketDTO();
+        dto.setTicketId(ticket.id);
+        dto.setStatus(ticket.status.name());
+        dto.setCreatedAt(ticket.createdAt);
+        dto.setOrder(ticket.order);
+        dto.setError(ticket.error);
+        return dto;
+    }
+}
@@ -1,12 +1,25 @@
 package com.example.AR_BE.service;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,16 +28,25 @@ import com.example.AR_BE.domain.dto.OrderDTO;
 import com.example.AR_BE.domain.dto.OrderDetailDTO;
 import com.example.AR_BE.domain.dto.OrderItemDTO;
 import com.example.AR_BE.domain.dto.OrderItemDetailDTO;
+import com.example.AR_BE.domain.dto.OrderStatusBatchResultDTO;
+import com.example.AR_BE.domain.dto.OrderStatusEventDTO;
+import com.example.AR_BE.domain.dto.OrderStatusSummaryDTO;
 import com.example.AR_BE.domain.request.CreateOrderRequest;
 import com.example.AR_BE.domain.request.OrderItemRequest;
 import com.example.AR_BE.domain.response.ResultPaginationDTO;
+import com.example.AR_BE.repository.OrderArchiveRepository;
+import com.example.AR_BE.repository.OrderItemRepository;
 import com.example.AR_BE.repository.OrderRepository;
 import com.example.AR_BE.repository.ProductRepository;
 import com.example.AR_BE.repository.UserRepository;
-import com.example.AR_BE.utils.SecurityUtils;
+import com.example.AR_BE.repository.projection.OrderHeaderView;
+import com.example.AR_BE.repository.projection.OrderItemDetailView;
+import com.example.AR_BE.utils.CurrentUser;
 import com.example.AR_BE.utils.constants.RoleEnum;
 import com.example.AR_BE.utils.constants.StatusEnum;
 import com.example.AR_BE.utils.exception.IdInvalidException;
+import com.example.AR_BE.utils.pagination.CountCache;
+import com.example.AR_BE.utils.pagination.Keyset;
 import com.example.AR_BE.utils.pricing.PriceCalculator;
 import com.example.AR_BE.validator.OrderValidator;
 
@@ -41,31 +63,74 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final PriceCalculator priceCalculator;
     private final OrderValidator orderValidator;
+    private final ReservationService reservationService;
+    private final OrderItemRepository orderItemRepository;
+    private final CountCache countCache;
+    private final UserCache userCache;
+    private final OrderStatusNotifier orderStatusNotifier;
+    private final SalesRollupService salesRollupService;
+    private final OrderArchiveRepository orderArchiveRepository;
+    private final OrderStatusCounters orderStatusCounters;
+
+    // updated_by của đơn bị hủy tự động vì PENDING quá lâu
+    private static final String EXPIRED_BY = "system";
+
+    // Key count theo bộ lọc của các list đơn
+    private static final String ALL_ORDERS_COUNT_KEY = "all";
+
+    @Value("${app.orders.batch-status.max-size:1000}")
+    private int maxBatchStatusSize;
 
     /**
      * Tạo order từ CreateOrderRequest.
      * - Validate input
-     * - Kiểm tra stock
+     * - Gộp productId trùng, lấy + kiểm tra stock tất cả product trong 1 query
+     * - Nếu có reservationId: dùng phần hàng đã giữ, chỉ trừ thêm phần vượt quá
+     * - Trừ stock cả đơn qua InventoryEngine
      * - Tính giá tại thời điểm mua (priceAtPurchase)
-     * - Trừ stock
      * - Lưu order (cascade lưu orderItems)
      */
 
     @Transactional
     public Order createOrder(CreateOrderRequest req) {
 
-        // 1. Lấy user hiện tại từ token
-        String username = SecurityUtils.getCurrentUserLogin()
-                .orElseThrow(() -> new RuntimeException("User not logged in"));
-        User user = userRepository.findByEmail(username);
-        if (user == null) {
-            throw new RuntimeException("User not found");
-        }
+        // 1. Lấy user hiện tại từ token (order chỉ cần reference, không SELECT users)
+        User user = userRepository.getReferenceById(userCache.currentUser().getId());
 
         // 2. Validate request
         orderValidator.validateRequest(req);
 
-        // 3. Tạo order
+        // 3. Gộp các dòng trùng productId
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItemRequest itemReq : req.getItems()) {
+            orderValidator.validateItem(itemReq);
+            quantities.merge(itemReq.getProductId(), itemReq.getQuantity(), Integer::sum);
+        }
+
+        // Chuyển reservation (nếu có): phần đã giữ không cần trừ stock lại
+        Map<Long, Integer> toReserve = quantities;
+        Map<Long, Integer> leftover = Map.of();
+        if (req.getReservationId() != null) {
+            ReservationService.Conversion conversion =
+                    reservationService.convert(req.getReservationId(), user.getId(), quantities);
+            toReserve = conversion.getExtra();
+            leftover = conversion.getLeftover();
+        }
+
+        // 4. Lấy (và lock nếu engine database) + validate toàn bộ product trong 1 query
+        Map<Long, Product> products = productService.getProductsForCheckout(quantities.keySet(), toReserve);
+
+        // Trừ stock cả đơn (database: UPDATE có điều kiện, memory: ledger trong RAM)
+        if (!toReserve.isEmpty()) {
+            productService.reserveStock(toReserve);
+        }
+
+        // Trả lại phần reservation giữ thừa
+        if (!leftover.isEmpty()) {
+            productService.releaseStock(leftover);
+        }
+
+        // 5. Tạo order
         Order order = new Order();
         order.setUser(user); // user từ token
         order.setShippingAddress(req.getShippingAddress());
@@ -74,15 +139,11 @@ public class OrderService {
         List<OrderItem> items = new ArrayList<>();
         double total = 0;
 
-        // 4. Duyệt từng item
-        for (OrderItemRequest itemReq : req.getItems()) {
-
-            orderValidator.validateItem(itemReq);
+        // 6. Duyệt từng product (stock đã được trừ ở bước 4)
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
 
-            // Lấy product + validate stock
-            Product product = productService.getAndValidateProduct(
-                    itemReq.getProductId(),
-                    itemReq.getQuantity());
+            Product product = products.get(entry.getKey());
+            int quantity = entry.getValue();
 
             // Tính giá
             double price = priceCalculator.calculatePrice(product);
@@ -91,40 +152,38 @@ public class OrderService {
             OrderItem item = new OrderItem();
             item.setOrder(order);
             item.setProduct(product);
-            item.setQuantity(itemReq.getQuantity());
+            item.setQuantity(quantity);
             item.setPriceAtPurchase(price);
-            item.setProductType(product.getCategory().getName());
+            item.setProductType(product.getCategory() != null ? product.getCategory().getName() : null);
 
-            total += price * itemReq.getQuantity();
+            total += price * quantity;
             items.add(item);
-
-            // Trừ stock
-            productService.deductStock(product, itemReq.getQuantity());
         }
 
-        // 5. Gán danh sách items + tổng tiền
+        // 7. Gán danh sách items + tổng tiền
         order.setOrderItems(items);
         order.setTotalAmount(total);
 
-        // 6. Lưu vào DB (cascade sẽ tự lưu OrderItem)
-        return orderRepository.save(order);
+        // 8. Lưu vào DB (cascade sẽ tự lưu OrderItem)
+        Order saved = orderRepository.save(order);
+        invalidateOrderCounts(user.getId(), StatusEnum.PENDING);
+        orderStatusCounters.moved(null, StatusEnum.PENDING, 1);
+        salesRollupService.orderPlaced(saved);
+        orderStatusNotifier.orderChanged(saved.getId(), user.getId(), null, StatusEnum.PENDING);
+        return saved;
     }
 
     public ResultPaginationDTO getOrdersByStatusPaging(
         String status,
         int page,
-        int size) {
+        int size,
+        String cursor,
+        boolean withTotal) {
 
         // 1. Lấy user từ token
-        String username = SecurityUtils.getCurrentUserLogin()
-                .orElseThrow(() -> new RuntimeException("User not logged in"));
-
-        User currentUser = userRepository.findByEmail(username);
-        if (currentUser == null) {
-            throw new RuntimeException("User not found");
-        }
+        CurrentUser currentUser = userCache.currentUser();
 
-        RoleEnum role = RoleEnum.valueOf(currentUser.getRole().getName().toUpperCase());
+        RoleEnum role = currentUser.getRoleEnum();
 
         // 2. Validate status
         StatusEnum st;
@@ -134,38 +193,67 @@ public class OrderService {
             throw new RuntimeException("Invalid status: " + status);
         }
 
+        // Chế độ cursor: seek theo (createdAt, id), không COUNT / LIMIT offset
+        final StatusEnum cursorStatus = st;
+        OrderKeysetQuery query = role == RoleEnum.USER
+                ? (createdAt, id, limit) -> orderRepository.findHeadersByUserIdAndStatusAfter(
+                        currentUser.getId(), cursorStatus, createdAt, id, limit)
+                : (createdAt, id, limit) -> orderRepository.findHeadersByStatusAfter(
+                        cursorStatus, createdAt, id, limit);
+        if (isArchivable(st)) {
+            query = withArchive(query, role == RoleEnum.USER
+                    ? (createdAt, id, limit) -> orderArchiveRepository.findHeadersByUserIdAndStatusAfter(
+                            currentUser.getId(), cursorStatus, createdAt, id, limit)
+                    : (createdAt, id, limit) -> orderArchiveRepository.findHeadersByStatusAfter(
+                            cursorStatus, createdAt, id, limit));
+        }
+        if (cursor != null) {
+            return fetchOrdersByCursor(cursor, size, query);
+        }
+
         // 3. Pageable sort theo createdAt DESC
         Pageable pageable = PageRequest.of(page, size,
                 Sort.by(Sort.Direction.DESC, "createdAt"));
 
-        Page<Order> pageData;
-
-        if (role == RoleEnum.USER) {
+        Slice<OrderHeaderView> pageData;
+        String countKey;
+        LongSupplier counter;
+
+        if (isArchivable(st)) {
+            // Đơn đã kết thúc có thể nằm ở archive → trộn 2 nguồn
+            pageData = offsetSliceWithArchive(role == RoleEnum.USER
+                    ? (branchLimit, limit, offset) -> orderRepository.findIdsWithArchiveByUserIdAndStatus(
+                            currentUser.getId(), st.name(), branchLimit, limit, offset)
+                    : (branchLimit, limit, offset) -> orderRepository.findIdsWithArchiveByStatus(
+                            st.name(), branchLimit, limit, offset),
+                    pageable);
+            if (role == RoleEnum.USER) {
+                countKey = userStatusCountKey(currentUser.getId(), st);
+                counter = () -> orderRepository.countByUserIdAndStatus(currentUser.getId(), st)
+                        + orderArchiveRepository.countByUserIdAndStatus(currentUser.getId(), st);
+            } else {
+                countKey = statusCountKey(st);
+                counter = () -> orderRepository.countByStatus(st) + orderArchiveRepository.countByStatus(st);
+            }
+        } else if (role == RoleEnum.USER) {
             // User chỉ xem đơn của TỰ MÌNH
-            pageData = orderRepository.findByUserIdAndStatus(
+            pageData = orderRepository.findHeadersByUserIdAndStatus(
                     currentUser.getId(), st, pageable);
+            countKey = userStatusCountKey(currentUser.getId(), st);
+            counter = () -> orderRepository.countByUserIdAndStatus(currentUser.getId(), st);
 
         } else {
             // Admin xem tất cả đơn
-            pageData = orderRepository.findByStatus(st, pageable);
+            pageData = orderRepository.findHeadersByStatus(st, pageable);
+            countKey = statusCountKey(st);
+            counter = () -> orderRepository.countByStatus(st);
         }
 
         // 4. Convert sang DTO
-        Page<OrderDetailDTO> dtoPage = pageData.map(this::convertToOrderDetailDTO);
-
-        // 5. Build Meta
-        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
-        meta.setPage(dtoPage.getNumber());
-        meta.setPageSize(dtoPage.getSize());
-        meta.setPages(dtoPage.getTotalPages());
-        meta.setTotal(dtoPage.getTotalElements());
-
-        // 6. Build Response
-        ResultPaginationDTO result = new ResultPaginationDTO();
-        result.setMeta(meta);
-        result.setResult(dtoPage.getContent());
+        Slice<OrderDetailDTO> dtoPage = toDetailPage(pageData);
 
-        return result;
+        // 5. Build Response (total lấy từ CountCache nếu withTotal)
+        return buildPaginationResult(dtoPage, withTotal, countKey, counter);
     }
 
 
@@ -173,83 +261,101 @@ public class OrderService {
     public OrderDTO cancelOrder(Long orderId) {
 
         // 1. Lấy user hiện tại từ token
-        String username = SecurityUtils.getCurrentUserLogin()
-                .orElseThrow(() -> new RuntimeException("User not logged in"));
-        User user = userRepository.findByEmail(username);
-        if (user == null) {
-            throw new RuntimeException("User not found");
-        }
+        CurrentUser user = userCache.currentUser();
 
-        RoleEnum role = RoleEnum.valueOf(user.getRole().getName().toUpperCase());
+        RoleEnum role = user.getRoleEnum();
 
-        // 2. Lấy order
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new IdInvalidException("Order ID " + orderId + " không tồn tại"));
+        // 2. Lấy order (chỉ header, không load entity)
+        OrderHeaderView order = orderRepository.findHeaderById(orderId)
+                .orElseThrow(() -> orderNotFound(orderId));
 
         // 3. Kiểm tra quyền trước khi xử lý
+        Set<StatusEnum> allowed;
         if (role == RoleEnum.USER) {
 
             // USER chỉ thao tác trên đơn của mình
-            if (!order.getUser().getId().equals(user.getId())) {
+            if (!order.getUserId().equals(user.getId())) {
                 throw new IdInvalidException("User không được phép thao tác đơn này");
             }
 
             // USER chỉ hủy đơn nếu đang PENDING
-            if (order.getStatus() != StatusEnum.PENDING) {
-                throw new IdInvalidException("User chỉ được hủy đơn khi trạng thái là PENDING");
-            }
+            allowed = EnumSet.of(StatusEnum.PENDING);
+        } else {
+            // Admin/Manager hủy được ở mọi trạng thái chưa hủy
+            allowed = EnumSet.complementOf(EnumSet.of(StatusEnum.CANCELLED));
         }
-        // Admin/Manager bỏ qua quyền
 
-        // 4. Nếu đã hủy rồi → trả luôn (sau khi check quyền)
-        if (order.getStatus() == StatusEnum.CANCELLED) {
-            return convertToDTO(order);
+        // 4. Đổi status + hoàn stock (chỉ khi chính request này đổi được)
+        StatusEnum from = transitionStatus(orderId, order.getStatus(), allowed, StatusEnum.CANCELLED, user.getEmail());
+        if (from != null) {
+            invalidateOrderCounts(order.getUserId(), from, StatusEnum.CANCELLED);
+            orderStatusCounters.moved(from, StatusEnum.CANCELLED, 1);
+            orderStatusNotifier.orderChanged(orderId, order.getUserId(), from, StatusEnum.CANCELLED);
+        } else if (role == RoleEnum.USER) {
+            throw new IdInvalidException("User chỉ được hủy đơn khi trạng thái là PENDING");
         }
+        // Admin: không đổi được nghĩa là đơn đã hủy rồi → trả luôn
 
-        // 5. Set trạng thái
-        order.setStatus(StatusEnum.CANCELLED);
-        orderRepository.save(order);
-
-        // 6. Tăng lại stock
-        order.getOrderItems().forEach(item -> {
-            productService.increaseStock(item.getProduct(), item.getQuantity());
-        });
-
-        return convertToDTO(order);
+        return convertToDTO(orderRepository.findById(orderId)
+                .orElseThrow(() -> new IdInvalidException("Order ID " + orderId + " không tồn tại")));
     }
 
     public OrderDetailDTO getOrderDetail(Long orderId) {
 
         // 1. Lấy user hiện tại từ token
-        String username = SecurityUtils.getCurrentUserLogin()
-                .orElseThrow(() -> new RuntimeException("User not logged in"));
+        CurrentUser currentUser = userCache.currentUser();
 
-        User currentUser = userRepository.findByEmail(username);
-        if (currentUser == null) {
-            throw new RuntimeException("User not found");
-        }
-
-        RoleEnum role = RoleEnum.valueOf(currentUser.getRole().getName().toUpperCase());
+        RoleEnum role = currentUser.getRoleEnum();
 
-        // 2. Lấy order
-        Order order = orderRepository.findById(orderId)
+        // 2. Lấy order (chỉ các cột cần hiển thị), không có ở bảng nóng thì tìm trong archive
+        OrderHeaderView order = orderRepository.findHeaderById(orderId)
+                .or(() -> orderArchiveRepository.findHeaderById(orderId))
                 .orElseThrow(() -> new IdInvalidException("Order ID " + orderId + " không tồn tại"));
 
         // 3. USER chỉ được xem order của chính họ
         if (role == RoleEnum.USER) {
-            if (!order.getUser().getId().equals(currentUser.getId())) {
+            if (!order.getUserId().equals(currentUser.getId())) {
                 throw new IdInvalidException("User không có quyền xem đơn này");
             }
         }
 
         // Admin xem được mọi đơn nên không cần check thêm
 
-        // 4. Convert sang DTO
-        return convertToOrderDetailDTO(order);
+        // 4. Convert sang DTO (items + product + ảnh đầu tiên trong 1 query)
+        return convertToOrderDetailDTO(order, loadItemDetails(List.of(orderId)).getOrDefault(orderId, List.of()));
+    }
+
+    /**
+     * Trang đơn → DTO: items của cả trang lấy trong 1 query.
+     */
+    private Slice<OrderDetailDTO> toDetailPage(Slice<OrderHeaderView> pageData) {
+        List<Long> orderIds = pageData.getContent().stream()
+                .map(OrderHeaderView::getId)
+                .collect(Collectors.toList());
+        Map<Long, List<OrderItemDetailDTO>> items = loadItemDetails(orderIds);
+        return pageData.map(o -> convertToOrderDetailDTO(o, items.getOrDefault(o.getId(), List.of())));
     }
 
+    // orderId -> items (giữ thứ tự theo id item)
+    private Map<Long, List<OrderItemDetailDTO>> loadItemDetails(List<Long> orderIds) {
+        Map<Long, List<OrderItemDetailDTO>> result = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return result;
+        }
+        for (OrderItemDetailView row : orderItemRepository.findDetailsByOrderIdIn(orderIds)) {
+            result.computeIfAbsent(row.getOrderId(), k -> new ArrayList<>()).add(convertItemToDetailDTO(row));
+        }
+        // Đơn luôn có item → đơn không có item ở bảng nóng là đơn đã archive
+        List<Long> archived = orderIds.stream().filter(id -> !result.containsKey(id)).collect(Collectors.toList());
+        if (!archived.isEmpty()) {
+            for (OrderItemDetailView row : orderArchiveRepository.findDetailsByOrderIdIn(archived)) {
+                result.computeIfAbsent(row.getOrderId(), k -> new ArrayList<>()).add(convertItemToDetailDTO(row));
+            }
+        }
+        return result;
+    }
 
-    private OrderDetailDTO convertToOrderDetailDTO(Order order) {
+    private OrderDetailDTO convertToOrderDetailDTO(OrderHeaderView order, List<OrderItemDetailDTO> items) {
         OrderDetailDTO dto = new OrderDetailDTO();
 
         dto.setOrderId(order.getId());
@@ -263,33 +369,21 @@ public class OrderService {
         dto.setCreatedBy(order.getCreatedBy());
         dto.setUpdatedBy(order.getUpdatedBy());
 
-        List<OrderItemDetailDTO> itemDtos = order.getOrderItems().stream()
-                .map(this::convertItemToDetailDTO)
-                .collect(Collectors.toList());
-
-        dto.setItems(itemDtos);
+        dto.setItems(items);
 
         return dto;
     }
 
-    private OrderItemDetailDTO convertItemToDetailDTO(OrderItem item) {
-        Product p = item.getProduct();
-
+    private OrderItemDetailDTO convertItemToDetailDTO(OrderItemDetailView item) {
         OrderItemDetailDTO dto = new OrderItemDetailDTO();
-        dto.setProductId(p.getId());
-        dto.setProductName(p.getName());
+        dto.setProductId(item.getProductId());
+        dto.setProductName(item.getProductName());
         dto.setProductType(item.getProductType());
         dto.setQuantity(item.getQuantity());
         dto.setPriceAtPurchase(item.getPriceAtPurchase());
-        dto.setOldPrice(p.getOldPrice());
-
-        // Lấy 1 URL ảnh đầu tiên từ DB
-        String imageUrl = null;
-        if (p.getImageUrl() != null && !p.getImageUrl().isEmpty()) {
-            imageUrl = p.getImageUrl().get(0);
-        }
-
-        dto.setImageUrl(imageUrl);
+        dto.setOldPrice(item.getOldPrice());
+        // URL ảnh đầu tiên (subquery LIMIT 1)
+        dto.setImageUrl(item.getImageUrl());
         return dto;
     }
 
@@ -323,16 +417,12 @@ public class OrderService {
     public ResultPaginationDTO getMyOrdersByStatus(
             String status,
             int page,
-            int size) {
+            int size,
+            String cursor,
+            boolean withTotal) {
 
         // 1. Lấy user từ token
-        String username = SecurityUtils.getCurrentUserLogin()
-                .orElseThrow(() -> new RuntimeException("User not logged in"));
-
-        User currentUser = userRepository.findByEmail(username);
-        if (currentUser == null) {
-            throw new RuntimeException("User not found");
-        }
+        CurrentUser currentUser = userCache.currentUser();
 
         // 2. Validate status
         StatusEnum statusEnum;
@@ -342,50 +432,89 @@ public class OrderService {
             throw new RuntimeException("Invalid status: " + status);
         }
 
+        // Chế độ cursor (đơn đã kết thúc: trộn thêm archive)
+        OrderKeysetQuery query = (createdAt, id, limit) -> orderRepository.findHeadersByUserIdAndStatusAfter(
+                currentUser.getId(), statusEnum, createdAt, id, limit);
+        boolean archivable = isArchivable(statusEnum);
+        if (archivable) {
+            query = withArchive(query, (createdAt, id, limit) -> orderArchiveRepository
+                    .findHeadersByUserIdAndStatusAfter(currentUser.getId(), statusEnum, createdAt, id, limit));
+        }
+        if (cursor != null) {
+            return fetchOrdersByCursor(cursor, size, query);
+        }
+
         // 3. Pageable sort theo createdAt DESC
         Pageable pageable = PageRequest.of(page, size,
                 Sort.by(Sort.Direction.DESC, "createdAt"));
 
         // 4. Lấy đơn của USER này theo status
-        Page<Order> pageData = orderRepository.findByUserIdAndStatus(
-                currentUser.getId(), statusEnum, pageable);
+        Slice<OrderHeaderView> pageData = archivable
+                ? offsetSliceWithArchive((branchLimit, limit, offset) -> orderRepository
+                        .findIdsWithArchiveByUserIdAndStatus(currentUser.getId(), statusEnum.name(),
+                                branchLimit, limit, offset), pageable)
+                : orderRepository.findHeadersByUserIdAndStatus(currentUser.getId(), statusEnum, pageable);
 
         // 5. Convert sang DTO
-        Page<OrderDetailDTO> dtoPage = pageData.map(this::convertToOrderDetailDTO);
+        Slice<OrderDetailDTO> dtoPage = toDetailPage(pageData);
 
         // 6. Build Response
-        return buildPaginationResult(dtoPage);
+        return buildPaginationResult(dtoPage, withTotal, userStatusCountKey(currentUser.getId(), statusEnum),
+                () -> orderRepository.countByUserIdAndStatus(currentUser.getId(), statusEnum)
+                        + (archivable ? orderArchiveRepository.countByUserIdAndStatus(currentUser.getId(), statusEnum)
+                                : 0));
     }
 
     public ResultPaginationDTO getAllOrdersByStatusForAdmin(
             String status,
             int page,
-            int size) {
+            int size,
+            String cursor,
+            boolean withTotal) {
 
         // 1. Lấy user từ token và check role
-        String username = SecurityUtils.getCurrentUserLogin()
-                .orElseThrow(() -> new RuntimeException("User not logged in"));
-
-        User currentUser = userRepository.findByEmail(username);
-        if (currentUser == null) {
-            throw new RuntimeException("User not found");
-        }
+        CurrentUser currentUser = userCache.currentUser();
 
         // 2. Check role ADMIN
-        RoleEnum role = RoleEnum.valueOf(currentUser.getRole().getName().toUpperCase());
+        RoleEnum role = currentUser.getRoleEnum();
         if (role != RoleEnum.ADMIN) {
             throw new IdInvalidException("Only ADMIN can access all orders");
         }
 
+        // Chế độ cursor: trang sâu không phải quét bỏ offset trên bảng orders lớn
+        if (cursor != null) {
+            if (status == null || status.trim().isEmpty()) {
+                return fetchOrdersByCursor(cursor, size,
+                        withArchive(orderRepository::findAllHeadersAfter, orderArchiveRepository::findAllHeadersAfter));
+            }
+            StatusEnum statusEnum;
+            try {
+                statusEnum = StatusEnum.valueOf(status.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid status: " + status);
+            }
+            OrderKeysetQuery query = (createdAt, id, limit) ->
+                    orderRepository.findHeadersByStatusAfter(statusEnum, createdAt, id, limit);
+            if (isArchivable(statusEnum)) {
+                query = withArchive(query, (createdAt, id, limit) ->
+                        orderArchiveRepository.findHeadersByStatusAfter(statusEnum, createdAt, id, limit));
+            }
+            return fetchOrdersByCursor(cursor, size, query);
+        }
+
         // 3. Pageable sort theo createdAt DESC
         Pageable pageable = PageRequest.of(page, size,
                 Sort.by(Sort.Direction.DESC, "createdAt"));
 
-        Page<Order> pageData;
+        Slice<OrderHeaderView> pageData;
+        String countKey;
+        LongSupplier counter;
 
         // 4. Nếu status == null hoặc empty → lấy TẤT CẢ
         if (status == null || status.trim().isEmpty()) {
-            pageData = orderRepository.findAll(pageable);
+            pageData = offsetSliceWithArchive(orderRepository::findAllIdsWithArchive, pageable);
+            countKey = ALL_ORDERS_COUNT_KEY;
+            counter = () -> orderRepository.count() + orderArchiveRepository.count();
         } else {
             // 5. Nếu có status → validate và filter theo status
             StatusEnum statusEnum;
@@ -394,22 +523,237 @@ public class OrderService {
             } catch (IllegalArgumentException e) {
                 throw new RuntimeException("Invalid status: " + status);
             }
-            pageData = orderRepository.findByStatus(statusEnum, pageable);
+            if (isArchivable(statusEnum)) {
+                pageData = offsetSliceWithArchive((branchLimit, limit, offset) -> orderRepository
+                        .findIdsWithArchiveByStatus(statusEnum.name(), branchLimit, limit, offset), pageable);
+                counter = () -> orderRepository.countByStatus(statusEnum)
+                        + orderArchiveRepository.countByStatus(statusEnum);
+            } else {
+                pageData = orderRepository.findHeadersByStatus(statusEnum, pageable);
+                counter = () -> orderRepository.countByStatus(statusEnum);
+            }
+            countKey = statusCountKey(statusEnum);
         }
 
         // 6. Convert sang DTO
-        Page<OrderDetailDTO> dtoPage = pageData.map(this::convertToOrderDetailDTO);
+        Slice<OrderDetailDTO> dtoPage = toDetailPage(pageData);
 
         // 7. Build Response
-        return buildPaginationResult(dtoPage);
+        return buildPaginationResult(dtoPage, withTotal, countKey, counter);
+    }
+
+    /**
+     * Số đơn (và tổng tiền nếu withAmount) của user hiện tại theo từng status,
+     * thay cho việc gọi my-orders từng status để lấy total.
+     * 1 câu GROUP BY status trên mỗi bảng orders / orders_archive.
+     */
+    public OrderStatusSummaryDTO getMyOrderSummary(boolean withAmount) {
+
+        // 1. Lấy user từ token
+        CurrentUser currentUser = userCache.currentUser();
+
+        // 2. Đếm theo status (không SUM → chỉ đọc index (user_id, status, ...))
+        List<Object[]> rows = new ArrayList<>();
+        if (withAmount) {
+            rows.addAll(orderRepository.summarizeByUserIdGroupByStatus(currentUser.getId()));
+            rows.addAll(orderArchiveRepository.summarizeByUserIdGroupByStatus(currentUser.getId()));
+        } else {
+            rows.addAll(orderRepository.countByUserIdGroupByStatus(currentUser.getId()));
+            rows.addAll(orderArchiveRepository.countByUserIdGroupByStatus(currentUser.getId()));
+        }
+
+        // 3. Build Response
+        return buildStatusSummary(rows, withAmount);
+    }
+
+    /**
+     * Số đơn toàn hệ thống theo status cho ADMIN, lấy từ OrderStatusCounters.
+     * withAmount: tổng tiền cần SUM trên bảng → chạy GROUP BY thật.
+     */
+    public OrderStatusSummaryDTO getOrderSummaryForAdmin(boolean withAmount) {
+
+        // 1. Check role ADMIN
+        if (userCache.currentUser().getRoleEnum() != RoleEnum.ADMIN) {
+            throw new IdInvalidException("Chỉ ADMIN mới có quyền xem thống kê đơn hàng");
+        }
+
+        // 2. Số đơn từ counter cache / GROUP BY nếu cần tổng tiền
+        List<Object[]> rows = new ArrayList<>();
+        if (withAmount) {
+            rows.addAll(orderRepository.summarizeGroupByStatus());
+            rows.addAll(orderArchiveRepository.summarizeGroupByStatus());
+        } else {
+            orderStatusCounters.snapshot().forEach((status, count) -> rows.add(new Object[] { status, count }));
+        }
+
+        // 3. Build Response
+        return buildStatusSummary(rows, withAmount);
+    }
+
+    // rows: [status, count(, sum)], có thể nhiều dòng cùng status (nóng + archive)
+    private static OrderStatusSummaryDTO buildStatusSummary(List<Object[]> rows, boolean withAmount) {
+        Map<StatusEnum, Long> counts = new EnumMap<>(StatusEnum.class);
+        Map<StatusEnum, Double> amounts = new EnumMap<>(StatusEnum.class);
+        for (Object[] row : rows) {
+            StatusEnum status = (StatusEnum) row[0];
+            counts.merge(status, ((Number) row[1]).longValue(), Long::sum);
+            if (withAmount) {
+                amounts.merge(status, ((Number) row[2]).doubleValue(), Double::sum);
+            }
+        }
+
+        OrderStatusSummaryDTO summary = new OrderStatusSummaryDTO();
+        List<OrderStatusSummaryDTO.StatusCount> statuses = new ArrayList<>();
+        long totalOrders = 0;
+        double totalAmount = 0;
+        for (StatusEnum status : StatusEnum.values()) {
+            OrderStatusSummaryDTO.StatusCount item = new OrderStatusSummaryDTO.StatusCount();
+            item.setStatus(status.name());
+            item.setCount(counts.getOrDefault(status, 0L));
+            if (withAmount) {
+                item.setTotalAmount(amounts.getOrDefault(status, 0.0));
+                totalAmount += item.getTotalAmount();
+            }
+            totalOrders += item.getCount();
+            statuses.add(item);
+        }
+        summary.setTotalOrders(totalOrders);
+        summary.setTotalAmount(withAmount ? totalAmount : null);
+        summary.setStatuses(statuses);
+        return summary;
+    }
+
+    // Query keyset: (createdAt, id) của cursor (null = trang đầu) + limit
+    @FunctionalInterface
+    private interface OrderKeysetQuery {
+        List<OrderHeaderView> find(Instant createdAt, Long id, Pageable limit);
+    }
+
+    // Đơn đã archive là đơn đã kết thúc, không đổi trạng thái được nữa
+    private IdInvalidException orderNotFound(Long orderId) {
+        if (orderArchiveRepository.existsById(orderId)) {
+            return new IdInvalidException("Order ID " + orderId + " đã kết thúc và được lưu trữ, không thể thay đổi");
+        }
+        return new IdInvalidException("Order ID " + orderId + " không tồn tại");
     }
 
-    private ResultPaginationDTO buildPaginationResult(Page<OrderDetailDTO> dtoPage) {
+    // Chỉ đơn DELIVERED / CANCELLED bị archive (null = mọi status)
+    private static boolean isArchivable(StatusEnum status) {
+        return status == null || status == StatusEnum.DELIVERED || status == StatusEnum.CANCELLED;
+    }
+
+    /**
+     * Trộn đơn nóng + archive: mỗi nguồn lấy tối đa limit dòng sau cursor
+     * (đã sort (createdAt, id) DESC), trộn lại và giữ limit dòng đầu.
+     */
+    private static OrderKeysetQuery withArchive(OrderKeysetQuery hot, OrderKeysetQuery archive) {
+        return (createdAt, id, limit) -> {
+            List<OrderHeaderView> hotRows = hot.find(createdAt, id, limit);
+            List<OrderHeaderView> archivedRows = archive.find(createdAt, id, limit);
+            if (archivedRows.isEmpty()) {
+                return hotRows;
+            }
+            Comparator<OrderHeaderView> newestFirst = Comparator
+                    .comparing(OrderHeaderView::getCreatedAt, Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+                    .thenComparing(OrderHeaderView::getId)
+                    .reversed();
+            List<OrderHeaderView> merged = new ArrayList<>(hotRows);
+            merged.addAll(archivedRows);
+            merged.sort(newestFirst);
+            return merged.size() > limit.getPageSize() ? merged.subList(0, limit.getPageSize()) : merged;
+        };
+    }
+
+    @FunctionalInterface
+    private interface OrderIdPageQuery {
+        List<Long> find(int branchLimit, int limit, int offset);
+    }
+
+    /**
+     * Trang offset trên đơn nóng + archive: id của trang (size + 1 dòng) lấy bằng
+     * 1 câu UNION ALL ... LIMIT / OFFSET trong SQL, sau đó load header theo id.
+     */
+    private Slice<OrderHeaderView> offsetSliceWithArchive(OrderIdPageQuery query, Pageable pageable) {
+        int offset = (int) pageable.getOffset();
+        int size = pageable.getPageSize();
+        List<Long> ids = query.find(offset + size + 1, size + 1, offset);
+        boolean hasNext = ids.size() > size;
+        if (hasNext) {
+            ids = ids.subList(0, size);
+        }
+        if (ids.isEmpty()) {
+            return new SliceImpl<>(List.of(), pageable, false);
+        }
+
+        // Đơn có thể vừa được archive giữa 2 câu → tìm tiếp ở archive
+        Map<Long, OrderHeaderView> headers = new HashMap<>();
+        for (OrderHeaderView header : orderRepository.findHeadersByIdIn(ids)) {
+            headers.put(header.getId(), header);
+        }
+        if (headers.size() < ids.size()) {
+            for (OrderHeaderView header : orderArchiveRepository.findHeadersByIdIn(ids)) {
+                headers.putIfAbsent(header.getId(), header);
+            }
+        }
+        List<OrderHeaderView> content = new ArrayList<>();
+        for (Long id : ids) {
+            OrderHeaderView header = headers.get(id);
+            if (header != null) {
+                content.add(header);
+            }
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    private ResultPaginationDTO fetchOrdersByCursor(String cursor, int size, OrderKeysetQuery query) {
+        Keyset.Cursor position = Keyset.decode(cursor);
+        Instant createdAt = null;
+        Long id = null;
+        if (position != null) {
+            if (!(position.getSortValue() instanceof Instant)) {
+                throw new IdInvalidException("Invalid cursor");
+            }
+            createdAt = (Instant) position.getSortValue();
+            id = position.getId();
+        }
+
+        // Lấy size + 1 dòng để biết còn trang sau
+        List<OrderHeaderView> rows = query.find(createdAt, id, PageRequest.of(0, size + 1));
+        Keyset.Page<OrderHeaderView> orders = Keyset.page(rows, size,
+                o -> Keyset.encode(o.getCreatedAt(), o.getId()));
+
+        Map<Long, List<OrderItemDetailDTO>> items = loadItemDetails(orders.getContent().stream()
+                .map(OrderHeaderView::getId)
+                .collect(Collectors.toList()));
+
+        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
+        meta.setPageSize(size);
+        meta.setNextCursor(orders.getNextCursor());
+
+        ResultPaginationDTO result = new ResultPaginationDTO();
+        result.setMeta(meta);
+        result.setResult(orders.getContent().stream()
+                .map(o -> convertToOrderDetailDTO(o, items.getOrDefault(o.getId(), List.of())))
+                .collect(Collectors.toList()));
+
+        return result;
+    }
+
+    /**
+     * withTotal = false: chỉ trả hasNext (không COUNT).
+     * withTotal = true: total lấy từ CountCache theo countKey, miss mới chạy counter.
+     */
+    private ResultPaginationDTO buildPaginationResult(Slice<OrderDetailDTO> dtoPage, boolean withTotal,
+            String countKey, LongSupplier counter) {
         ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
         meta.setPage(dtoPage.getNumber());
         meta.setPageSize(dtoPage.getSize());
-        meta.setPages(dtoPage.getTotalPages());
-        meta.setTotal(dtoPage.getTotalElements());
+        meta.setHasNext(dtoPage.hasNext());
+        if (withTotal) {
+            long total = countCache.count(CountCache.ORDERS, countKey, counter);
+            meta.setTotal(total);
+            meta.setPages((int) Math.ceil((double) total / dtoPage.getSize()));
+        }
 
         ResultPaginationDTO result = new ResultPaginationDTO();
         result.setMeta(meta);
@@ -422,56 +766,38 @@ public class OrderService {
     @Transactional
     public OrderDTO cancelMyOrder(Long orderId) {
         // 1. Lấy user hiện tại từ token
-        String username = SecurityUtils.getCurrentUserLogin()
-                .orElseThrow(() -> new RuntimeException("User not logged in"));
-        User user = userRepository.findByEmail(username);
-        if (user == null) {
-            throw new RuntimeException("User not found");
-        }
+        CurrentUser user = userCache.currentUser();
 
-        // 2. Lấy order
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new IdInvalidException("Order ID " + orderId + " không tồn tại"));
+        // 2. Lấy order (chỉ header)
+        OrderHeaderView order = orderRepository.findHeaderById(orderId)
+                .orElseThrow(() -> orderNotFound(orderId));
 
         // 3. Kiểm tra quyền: USER chỉ thao tác trên đơn của mình
-        if (!order.getUser().getId().equals(user.getId())) {
+        if (!order.getUserId().equals(user.getId())) {
             throw new IdInvalidException("Bạn không có quyền hủy đơn hàng này");
         }
 
-        // 4. Kiểm tra trạng thái: USER chỉ hủy được khi PENDING
-        if (order.getStatus() != StatusEnum.PENDING) {
+        // 4. PENDING → CANCELLED + hoàn stock; không đổi được (không còn PENDING) → báo lỗi
+        StatusEnum from = transitionStatus(orderId, order.getStatus(), EnumSet.of(StatusEnum.PENDING),
+                StatusEnum.CANCELLED, user.getEmail());
+        if (from == null) {
             throw new IdInvalidException("Chỉ có thể hủy đơn hàng khi trạng thái là PENDING");
         }
+        invalidateOrderCounts(user.getId(), from, StatusEnum.CANCELLED);
+        orderStatusCounters.moved(from, StatusEnum.CANCELLED, 1);
+        orderStatusNotifier.orderChanged(orderId, user.getId(), from, StatusEnum.CANCELLED);
 
-        // 5. Nếu đã CANCELLED rồi → trả luôn
-        if (order.getStatus() == StatusEnum.CANCELLED) {
-            return convertToDTO(order);
-        }
-
-        // 6. Set trạng thái CANCELLED
-        order.setStatus(StatusEnum.CANCELLED);
-        orderRepository.save(order);
-
-        // 7. Hoàn lại stock
-        order.getOrderItems().forEach(item -> {
-            productService.increaseStock(item.getProduct(), item.getQuantity());
-        });
-
-        return convertToDTO(order);
+        return convertToDTO(orderRepository.findById(orderId)
+                .orElseThrow(() -> new IdInvalidException("Order ID " + orderId + " không tồn tại")));
     }
 
     @Transactional
     public OrderDTO updateOrderStatus(Long orderId, String newStatus) {
 
         // 1. Lấy user và check role ADMIN
-        String username = SecurityUtils.getCurrentUserLogin()
-                .orElseThrow(() -> new RuntimeException("User not logged in"));
-        User user = userRepository.findByEmail(username);
-        if (user == null) {
-            throw new RuntimeException("User not found");
-        }
+        CurrentUser user = userCache.currentUser();
 
-        RoleEnum role = RoleEnum.valueOf(user.getRole().getName().toUpperCase());
+        RoleEnum role = user.getRoleEnum();
         if (role != RoleEnum.ADMIN) {
             throw new IdInvalidException("Chỉ ADMIN mới có quyền cập nhật trạng thái đơn hàng");
         }
@@ -484,27 +810,253 @@ public class OrderService {
             throw new IdInvalidException("Trạng thái không hợp lệ: " + newStatus);
         }
 
-        // 3. Lấy order
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new IdInvalidException("Order ID " + orderId + " không tồn tại"));
+        // 3. Lấy order (chỉ header)
+        OrderHeaderView order = orderRepository.findHeaderById(orderId)
+                .orElseThrow(() -> orderNotFound(orderId));
 
         StatusEnum oldStatus = order.getStatus();
 
-        // 4. Validate business logic theo flow
+        // 4. Validate business logic theo flow (để báo lỗi cụ thể)
         validateStatusTransition(oldStatus, statusEnum);
 
-        // 5. Nếu chuyển sang CANCELLED → hoàn lại stock
-        if (statusEnum == StatusEnum.CANCELLED && oldStatus != StatusEnum.CANCELLED) {
-            order.getOrderItems().forEach(item -> {
-                productService.increaseStock(item.getProduct(), item.getQuantity());
-            });
+        // 5. Cập nhật status có điều kiện (+ hoàn stock nếu sang CANCELLED).
+        // Status bị request khác đổi sau bước 3 sang trạng thái không hợp lệ → 0 dòng
+        StatusEnum from = transitionStatus(orderId, oldStatus, allowedSourceStatuses(statusEnum), statusEnum,
+                user.getEmail());
+        if (from == null) {
+            throw new IdInvalidException("Trạng thái đơn hàng vừa bị thay đổi, vui lòng thử lại");
         }
+        invalidateOrderCounts(order.getUserId(), from, statusEnum);
+        orderStatusCounters.moved(from, statusEnum, 1);
+        orderStatusNotifier.orderChanged(orderId, order.getUserId(), from, statusEnum);
+
+        return convertToDTO(orderRepository.findById(orderId)
+                .orElseThrow(() -> new IdInvalidException("Order ID " + orderId + " không tồn tại")));
+    }
+
+    /**
+     * ADMIN cập nhật status nhiều đơn trong 1 transaction.
+     * - Lock các đơn theo thứ tự id, validate chuyển trạng thái trong RAM
+     * - 1 câu UPDATE cho mỗi nhóm status cũ
+     * - Chuyển sang CANCELLED → hoàn stock gộp theo product
+     * Đơn không tồn tại / không được chuyển chỉ bị bỏ qua, các đơn khác vẫn được cập nhật.
+     */
+    @Transactional
+    public OrderStatusBatchResultDTO updateOrderStatusBatch(List<Long> orderIds, String newStatus) {
 
-        // 6. Cập nhật status
-        order.setStatus(statusEnum);
-        orderRepository.save(order);
+        // 1. Check role ADMIN
+        CurrentUser user = userCache.currentUser();
+        if (user.getRoleEnum() != RoleEnum.ADMIN) {
+            throw new IdInvalidException("Chỉ ADMIN mới có quyền cập nhật trạng thái đơn hàng");
+        }
 
-        return convertToDTO(order);
+        // 2. Validate status + danh sách id (bỏ trùng, giữ thứ tự request)
+        StatusEnum statusEnum;
+        try {
+            statusEnum = StatusEnum.valueOf(newStatus.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IdInvalidException("Trạng thái không hợp lệ: " + newStatus);
+        }
+        Set<Long> ids = new LinkedHashSet<>();
+        if (orderIds != null) {
+            for (Long id : orderIds) {
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IdInvalidException("Danh sách orderIds không được để trống");
+        }
+        if (ids.size() > maxBatchStatusSize) {
+            throw new IdInvalidException("Tối đa " + maxBatchStatusSize + " đơn mỗi lần cập nhật");
+        }
+
+        // 3. Lock + validate từng đơn, gom theo status cũ
+        Map<Long, OrderStatusBatchResultDTO.Item> outcomes = new HashMap<>();
+        Map<StatusEnum, List<Long>> idsByOldStatus = new EnumMap<>(StatusEnum.class);
+        List<OrderStatusEventDTO> events = new ArrayList<>();
+        for (Order order : orderRepository.findAllByIdInForUpdate(ids)) {
+            OrderStatusBatchResultDTO.Item item = new OrderStatusBatchResultDTO.Item();
+            item.setOrderId(order.getId());
+            item.setOldStatus(order.getStatus().name());
+            try {
+                validateStatusTransition(order.getStatus(), statusEnum);
+                item.setOutcome("UPDATED");
+                idsByOldStatus.computeIfAbsent(order.getStatus(), s -> new ArrayList<>()).add(order.getId());
+                events.add(OrderStatusNotifier.event(order.getId(), order.getUser().getId(),
+                        order.getStatus(), statusEnum));
+            } catch (IdInvalidException e) {
+                item.setOutcome("REJECTED");
+                item.setMessage(e.getMessage());
+            }
+            outcomes.put(order.getId(), item);
+        }
+
+        // 4. UPDATE theo nhóm status cũ (đã lock nên số dòng = số đơn của nhóm)
+        Instant now = Instant.now();
+        List<Long> updatedIds = new ArrayList<>();
+        for (Map.Entry<StatusEnum, List<Long>> group : idsByOldStatus.entrySet()) {
+            orderRepository.updateStatusByIdInAndStatus(group.getValue(), group.getKey(), statusEnum,
+                    now, user.getEmail());
+            updatedIds.addAll(group.getValue());
+            orderStatusCounters.moved(group.getKey(), statusEnum, group.getValue().size());
+        }
+
+        // 5. Chuyển sang CANCELLED → hoàn stock, mỗi product 1 lần (+ rollup doanh số)
+        if (statusEnum == StatusEnum.CANCELLED && !updatedIds.isEmpty()) {
+            restoreStock(updatedIds);
+            salesRollupService.ordersCancelled(updatedIds, false);
+        } else if (statusEnum == StatusEnum.DELIVERED && !updatedIds.isEmpty()) {
+            salesRollupService.ordersDelivered(updatedIds);
+        }
+        if (!updatedIds.isEmpty()) {
+            countCache.invalidate(CountCache.ORDERS);
+        }
+        orderStatusNotifier.publish(events);
+
+        // 6. Kết quả theo thứ tự request
+        List<OrderStatusBatchResultDTO.Item> results = new ArrayList<>();
+        for (Long id : ids) {
+            OrderStatusBatchResultDTO.Item item = outcomes.get(id);
+            if (item == null) {
+                item = new OrderStatusBatchResultDTO.Item();
+                item.setOrderId(id);
+                item.setOutcome("NOT_FOUND");
+                item.setMessage("Order ID " + id + " không tồn tại");
+            }
+            results.add(item);
+        }
+
+        OrderStatusBatchResultDTO result = new OrderStatusBatchResultDTO();
+        result.setStatus(statusEnum.name());
+        result.setUpdated(updatedIds.size());
+        result.setFailed(ids.size() - updatedIds.size());
+        result.setResults(results);
+        return result;
+    }
+
+    /**
+     * Hủy 1 batch đơn PENDING tạo trước cutoff (PendingOrderSweeper, mỗi batch 1 transaction).
+     * - Lock batch bằng SKIP LOCKED, 1 câu UPDATE cho cả batch
+     * - Hoàn stock gộp theo product (1 lần release cho cả batch)
+     *
+     * @return số đơn đã hủy
+     */
+    @Transactional
+    public int expirePendingOrders(Instant cutoff, int limit) {
+
+        // 1. Lock các đơn PENDING cũ nhất chưa bị ai giữ
+        List<Long> ids = new ArrayList<>();
+        List<OrderStatusEventDTO> events = new ArrayList<>();
+        Set<Long> userIds = new HashSet<>();
+        for (Object[] row : orderRepository.findStalePendingForUpdate(cutoff, limit)) {
+            Long orderId = ((Number) row[0]).longValue();
+            Long userId = row[1] != null ? ((Number) row[1]).longValue() : null;
+            ids.add(orderId);
+            if (userId != null) {
+                userIds.add(userId);
+                events.add(OrderStatusNotifier.event(orderId, userId, StatusEnum.PENDING, StatusEnum.CANCELLED));
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // 2. PENDING → CANCELLED (đã lock nên số dòng = số đơn)
+        orderRepository.updateStatusByIdInAndStatus(ids, StatusEnum.PENDING, StatusEnum.CANCELLED,
+                Instant.now(), EXPIRED_BY);
+
+        // 3. Hoàn stock + rollup doanh số
+        restoreStock(ids);
+        salesRollupService.ordersCancelled(ids, false);
+
+        // 4. Count + thông báo
+        for (Long userId : userIds) {
+            invalidateOrderCounts(userId, StatusEnum.PENDING, StatusEnum.CANCELLED);
+        }
+        orderStatusCounters.moved(StatusEnum.PENDING, StatusEnum.CANCELLED, ids.size());
+        orderStatusNotifier.publish(events);
+        return ids.size();
+    }
+
+    private static String userStatusCountKey(Long userId, StatusEnum status) {
+        return "u=" + userId + "|s=" + status;
+    }
+
+    private static String statusCountKey(StatusEnum status) {
+        return "s=" + status;
+    }
+
+    /**
+     * Đơn của userId vừa vào / ra các status này → xóa các count bị ảnh hưởng.
+     */
+    private void invalidateOrderCounts(Long userId, StatusEnum... statuses) {
+        List<String> keys = new ArrayList<>();
+        keys.add(ALL_ORDERS_COUNT_KEY);
+        for (StatusEnum status : statuses) {
+            keys.add(userStatusCountKey(userId, status));
+            keys.add(statusCountKey(status));
+        }
+        countCache.invalidate(CountCache.ORDERS, keys.toArray(new String[0]));
+    }
+
+    /**
+     * Chuyển status bằng câu UPDATE ... WHERE id = :id AND status = :from (CAS).
+     * Chỉ request đổi được đúng 1 dòng mới hoàn stock (khi sang CANCELLED)
+     * và ghi rollup doanh số, nên 2 lần hủy đồng thời không cộng stock 2 lần.
+     *
+     * @param expected status đọc được trước đó (header), CAS thử từ status này trước
+     * @return status cũ mà chính request này đã chuyển đơn đi, null nếu status hiện tại không nằm trong allowed
+     */
+    private StatusEnum transitionStatus(Long orderId, StatusEnum expected, Set<StatusEnum> allowed,
+            StatusEnum newStatus, String updatedBy) {
+        Instant now = Instant.now();
+        StatusEnum from = expected;
+        while (from != null && allowed.contains(from)) {
+            if (orderRepository.compareAndSetStatus(orderId, EnumSet.of(from), newStatus, now, updatedBy) == 1) {
+                break;
+            }
+            // Request khác vừa đổi status → đọc lại bản mới nhất (khóa dòng) rồi CAS từ status đó
+            StatusEnum current = orderRepository.findStatusByIdForUpdate(orderId).map(StatusEnum::valueOf).orElse(null);
+            from = current != from ? current : null;
+        }
+        if (from == null || !allowed.contains(from)) {
+            return null;
+        }
+        if (newStatus == StatusEnum.CANCELLED) {
+            restoreStock(List.of(orderId));
+            // Hủy đơn đã giao phải trừ phần delivered trong rollup
+            salesRollupService.ordersCancelled(List.of(orderId), from == StatusEnum.DELIVERED);
+        } else if (newStatus == StatusEnum.DELIVERED) {
+            salesRollupService.ordersDelivered(List.of(orderId));
+        }
+        return from;
+    }
+
+    // Cộng lại stock của các đơn, gộp theo product (1 query đọc + 1 lần release)
+    private void restoreStock(List<Long> orderIds) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (Object[] row : orderItemRepository.sumQuantityByOrderIdIn(orderIds)) {
+            quantities.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        if (!quantities.isEmpty()) {
+            productService.releaseStock(quantities);
+        }
+    }
+
+    // Các status cũ được phép chuyển sang newStatus (theo validateStatusTransition)
+    private Set<StatusEnum> allowedSourceStatuses(StatusEnum newStatus) {
+        Set<StatusEnum> allowed = EnumSet.noneOf(StatusEnum.class);
+        for (StatusEnum oldStatus : StatusEnum.values()) {
+            try {
+                validateStatusTransition(oldStatus, newStatus);
+                allowed.add(oldStatus);
+            } catch (IdInvalidException e) {
+                // không được phép
+            }
+        }
+        return allowed;
     }
 
     /**
@@ -0,0 +1,130 @@
+package com.example.AR_BE.service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.AR_BE.repository.OrderArchiveRepository;
+import com.example.AR_BE.repository.OrderRepository;
+import com.example.AR_BE.utils.constants.StatusEnum;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Số đơn theo status trên toàn hệ thống (orders + orders_archive) cho summary của ADMIN.
+ *
+ * Nạp 1 lần bằng GROUP BY status, sau đó OrderService báo mỗi lần đơn đổi
+ * status và số đếm được cộng / trừ sau commit. Thay đổi từ instance khác
+ * không thấy được nên định kỳ nạp lại (app.orders.status-counters.resync-ms).
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderStatusCounters {
+
+    private final OrderRepository orderRepository;
+    private final OrderArchiveRepository orderArchiveRepository;
+
+    private final Object lock = new Object();
+    // null = chưa nạp
+    private Map<StatusEnum, Long> counts;
+    // != null khi đang nạp lại: thay đổi trong lúc chạy GROUP BY, cộng vào kết quả sau
+    private Map<StatusEnum, Long> changedDuringLoad;
+
+    /**
+     * Số đơn theo status (copy), đủ mọi StatusEnum.
+     */
+    public Map<StatusEnum, Long> snapshot() {
+        synchronized (lock) {
+            if (counts != null) {
+                return new EnumMap<>(counts);
+            }
+        }
+        resync();
+        synchronized (lock) {
+            if (counts != null) {
+                return new EnumMap<>(counts);
+            }
+        }
+        // Request khác đang nạp → đếm thẳng
+        return load();
+    }
+
+    /**
+     * count đơn chuyển từ status from sang to (from = null: đơn mới), áp dụng sau commit.
+     */
+    public void moved(StatusEnum from, StatusEnum to, long count) {
+        if (count == 0 || from == to) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(from, to, count);
+                }
+            });
+        } else {
+            apply(from, to, count);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.status-counters.resync-ms:60000}")
+    public void resync() {
+        synchronized (lock) {
+            if (changedDuringLoad != null) {
+                return;
+            }
+            changedDuringLoad = new EnumMap<>(StatusEnum.class);
+        }
+        Map<StatusEnum, Long> loaded = null;
+        try {
+            loaded = load();
+        } finally {
+            synchronized (lock) {
+                if (loaded != null) {
+                    for (Map.Entry<StatusEnum, Long> change : changedDuringLoad.entrySet()) {
+                        loaded.merge(change.getKey(), change.getValue(), Long::sum);
+                    }
+                    counts = loaded;
+                }
+                changedDuringLoad = null;
+            }
+        }
+    }
+
+    private void apply(StatusEnum from, StatusEnum to, long count) {
+        synchronized (lock) {
+            applyTo(counts, from, to, count);
+            applyTo(changedDuringLoad, from, to, count);
+        }
+    }
+
+    private static void applyTo(Map<StatusEnum, Long> target, StatusEnum from, StatusEnum to, long count) {
+        if (target == null) {
+            return;
+        }
+        if (from != null) {
+            target.merge(from, -count, Long::sum);
+        }
+        target.merge(to, count, Long::sum);
+    }
+
+    private Map<StatusEnum, Long> load() {
+        Map<StatusEnum, Long> loaded = new EnumMap<>(StatusEnum.class);
+        for (StatusEnum status : StatusEnum.values()) {
+            loaded.put(status, 0L);
+        }
+        for (List<Object[]> rows : List.of(orderRepository.countGroupByStatus(),
+                orderArchiveRepository.countGroupByStatus())) {
+            for (Object[] row : rows) {
+                loaded.merge((StatusEnum) row[0], ((Number) row[1]).longValue(), Long::sum);
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.AR_BE.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.AR_BE.domain.dto.OrderStatusEventDTO;
+import com.example.AR_BE.utils.constants.StatusEnum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Đẩy thay đổi trạng thái đơn tới chủ đơn qua WebSocket (/user/queue/orders).
+ *
+ * Event chỉ được gửi sau khi transaction commit (rollback → không gửi gì).
+ * Việc gửi chạy trên 1 thread riêng với hàng đợi có giới hạn nên request
+ * không chờ broker; hàng đợi đầy thì bỏ event (client vẫn có thể tải lại
+ * danh sách đơn) và tăng counter orders.notify.dropped.
+ */
+@Service
+public class OrderStatusNotifier {
+
+    public static final String DESTINATION = "/queue/orders";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ThreadPoolExecutor executor;
+    private final Counter sentCounter;
+    private final Counter droppedCounter;
+
+    public OrderStatusNotifier(SimpMessagingTemplate messagingTemplate, MeterRegistry meterRegistry,
+            @Value("${app.websocket.orders.queue-capacity:10000}") int queueCapacity) {
+        this.messagingTemplate = messagingTemplate;
+        // 1 thread: event của cùng 1 đơn được gửi đúng thứ tự commit
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "order-notify");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        meterRegistry.gauge("orders.notify.queue.depth", executor.getQueue(), q -> q.size());
+        this.sentCounter = meterRegistry.counter("orders.notify.sent");
+        this.droppedCounter = meterRegistry.counter("orders.notify.dropped");
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    public void orderChanged(Long orderId, Long userId, StatusEnum oldStatus, StatusEnum newStatus) {
+        publish(List.of(event(orderId, userId, oldStatus, newStatus)));
+    }
+
+    public static OrderStatusEventDTO event(Long orderId, Long userId, StatusEnum oldStatus, StatusEnum newStatus) {
+        OrderStatusEventDTO event = new OrderStatusEventDTO();
+        event.setOrderId(orderId);
+        event.setUserId(userId);
+        event.setOldStatus(oldStatus != null ? oldStatus.name() : null);
+        event.setStatus(newStatus.name());
+        event.setChangedAt(Instant.now());
+        return event;
+    }
+
+    /**
+     * Gửi các event sau commit của transaction hiện tại (không có transaction → gửi ngay).
+     */
+    public void publish(List<OrderStatusEventDTO> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<OrderStatusEventDTO> copy = new ArrayList<>(events);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(copy);
+                }
+            });
+        } else {
+            dispatch(copy);
+        }
+    }
+
+    private void dispatch(List<OrderStatusEventDTO> events) {
+        try {
+            executor.execute(() -> {
+                for (OrderStatusEventDTO event : events) {
+                    try {
+                        messagingTemplate.convertAndSendToUser(String.valueOf(event.getUserId()), DESTINATION, event);
+                        sentCounter.increment();
+                    } catch (RuntimeException e) {
+                        droppedCounter.increment();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            droppedCounter.increment(events.size());
+        }
+    }
+}
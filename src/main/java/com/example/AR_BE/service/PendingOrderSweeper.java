@@ -0,0 +1,71 @@
+package com.example.AR_BE.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tự hủy đơn PENDING quá app.orders.pending-expiry.max-age-minutes để trả stock.
+ *
+ * Mỗi batch là 1 transaction của OrderService.expirePendingOrders. Chỉ instance
+ * giữ lease "pending-order-sweeper" (SchedulerLease) mới chạy.
+ */
+@Service
+public class PendingOrderSweeper {
+
+    private static final String LEASE = "pending-order-sweeper";
+
+    private final OrderService orderService;
+    private final SchedulerLease schedulerLease;
+    private final Counter expiredCounter;
+
+    @Value("${app.orders.pending-expiry.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.orders.pending-expiry.max-age-minutes:1440}")
+    private long maxAgeMinutes;
+
+    @Value("${app.orders.pending-expiry.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.orders.pending-expiry.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    // Phải lớn hơn thời gian 1 batch, được gia hạn sau mỗi batch
+    @Value("${app.orders.pending-expiry.lease-seconds:120}")
+    private long leaseSeconds;
+
+    public PendingOrderSweeper(OrderService orderService, SchedulerLease schedulerLease,
+            MeterRegistry meterRegistry) {
+        this.orderService = orderService;
+        this.schedulerLease = schedulerLease;
+        this.expiredCounter = meterRegistry.counter("orders.pending.expired");
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.pending-expiry.interval-ms:60000}")
+    public void sweep() {
+        if (!enabled || !schedulerLease.tryAcquire(LEASE, Duration.ofSeconds(leaseSeconds))) {
+            return;
+        }
+        try {
+            Instant cutoff = Instant.now().minus(Duration.ofMinutes(maxAgeMinutes));
+            // Giới hạn số batch mỗi lần chạy để không chiếm scheduler quá lâu
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                int expired = orderService.expirePendingOrders(cutoff, batchSize);
+                expiredCounter.increment(expired);
+                if (expired < batchSize
+                        || !schedulerLease.tryAcquire(LEASE, Duration.ofSeconds(leaseSeconds))) {
+                    break;
+                }
+            }
+        } finally {
+            schedulerLease.release(LEASE);
+        }
+    }
+}
@@ -2,21 +2,32 @@ package com.example.AR_BE.service;
 
 import java.util.Optional;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import com.example.AR_BE.domain.Permission;
 import com.example.AR_BE.domain.response.ResultPaginationDTO;
 import com.example.AR_BE.repository.PermissionRepository;
+import com.example.AR_BE.utils.pagination.CountCache;
+import com.example.AR_BE.utils.pagination.Keyset;
+import com.example.AR_BE.utils.pagination.SliceQuery;
 
 @Service
 public class PermissionService {
     private final PermissionRepository permissionRepository;
+    private final SliceQuery sliceQuery;
+    private final CountCache countCache;
+    private final UserCache userCache;
 
-    public PermissionService(PermissionRepository permissionRepository) {
+    public PermissionService(PermissionRepository permissionRepository, SliceQuery sliceQuery,
+            CountCache countCache, UserCache userCache) {
         this.permissionRepository = permissionRepository;
+        this.sliceQuery = sliceQuery;
+        this.countCache = countCache;
+        this.userCache = userCache;
     }
 
     public boolean isPermissionExist(Permission permission) {
@@ -28,6 +39,7 @@ public class PermissionService {
     }
 
     public Permission createPermission(Permission permission) {
+        this.countCache.invalidate(CountCache.PERMISSIONS);
         return this.permissionRepository.save(permission);
     }
 
@@ -46,6 +58,8 @@ public class PermissionService {
             existingPermission.setApiPath(permission.getApiPath());
             existingPermission.setMethod(permission.getMethod());
             existingPermission.setModule(permission.getModule());
+            this.countCache.invalidate(CountCache.PERMISSIONS);
+            this.userCache.invalidateAll();
             return this.permissionRepository.save(existingPermission);
         }
         return null;
@@ -58,19 +72,39 @@ public class PermissionService {
             role.getPermissions().remove(existingPermission);
         });
         this.permissionRepository.delete(existingPermission);
+        this.countCache.invalidate(CountCache.PERMISSIONS);
+        this.userCache.invalidateAll();
     }
 
-    public ResultPaginationDTO getAllPermissions(Specification<Permission> spec, Pageable pageable) {
-        // TODO Auto-generated method stub
-        Page<Permission> pagePermissions = this.permissionRepository.findAll(spec, pageable);
+    public ResultPaginationDTO getAllPermissions(Specification<Permission> spec, String filter, Pageable pageable,
+            boolean withTotal) {
+        Slice<Permission> pagePermissions = this.sliceQuery.find(Permission.class, spec, pageable);
         ResultPaginationDTO result = new ResultPaginationDTO();
         ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
         meta.setPage(pageable.getPageNumber() + 1);
         meta.setPageSize(pageable.getPageSize());
-        meta.setPages(pagePermissions.getTotalPages());
-        meta.setTotal(pagePermissions.getTotalElements());
+        meta.setHasNext(pagePermissions.hasNext());
+        if (withTotal) {
+            long total = this.countCache.count(CountCache.PERMISSIONS, filter,
+                    () -> this.permissionRepository.count(spec));
+            meta.setTotal(total);
+            meta.setPages((int) Math.ceil((double) total / pageable.getPageSize()));
+        }
         result.setMeta(meta);
         result.setResult(pagePermissions.getContent());
         return result;
     }
+
+    // Chế độ cursor: seek theo id, không COUNT / LIMIT offset
+    public ResultPaginationDTO getAllPermissionsByCursor(Specification<Permission> spec, String cursor, int size) {
+        Keyset.Page<Permission> permissions = Keyset.fetch(this.permissionRepository, spec, "id",
+                Sort.Direction.ASC, cursor, size, null, Permission::getId);
+        ResultPaginationDTO result = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
+        meta.setPageSize(size);
+        meta.setNextCursor(permissions.getNextCursor());
+        result.setMeta(meta);
+        result.setResult(permissions.getContent());
+        return result;
+    }
 }
@@ -10,12 +10,19 @@ import com.example.AR_BE.domain.request.CreateProductDTO;
 import com.example.AR_BE.domain.request.UpdateProductDTO;
 import com.example.AR_BE.repository.CategoryRepository;
 import com.example.AR_BE.repository.ProductRepository;
+import com.example.AR_BE.repository.StockReservationItemRepository;
+import com.example.AR_BE.service.inventory.InventoryEngine;
+import com.example.AR_BE.service.inventory.StockShardService;
+import com.example.AR_BE.utils.constants.ReservationStatusEnum;
+import com.example.AR_BE.utils.pagination.CountCache;
+import com.example.AR_BE.utils.pagination.Keyset;
+import com.example.AR_BE.utils.pagination.SliceQuery;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.PageRequest;
 import com.example.AR_BE.domain.response.ResultPaginationDTO;
 import org.springframework.data.jpa.domain.Specification;
@@ -23,7 +30,10 @@ import org.springframework.web.multipart.MultipartFile;
 import com.example.AR_BE.service.FileService;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,6 +43,12 @@ public class ProductService {
     private final ProductRepository productRepo;
     private final CategoryRepository categoryRepo;
     private final FileService fileService;
+    private final InventoryEngine inventoryEngine;
+    private final StockShardService stockShardService;
+    private final StockReservationItemRepository reservationItemRepo;
+    private final SliceQuery sliceQuery;
+    private final CountCache countCache;
+    private final ProductStockBroadcaster productStockBroadcaster;
 
     public boolean existsById(Long id) {
         return productRepo.existsById(id);
@@ -40,14 +56,11 @@ public class ProductService {
 
     // GET all
     public List<ProductDTO> getAll() {
-        return productRepo.findAll().stream()
-                .map(this::toDTO)
-                .toList();
+        return toDTOs(productRepo.findAll());
     }
 
-    public ResultPaginationDTO getProducts(int page, int pageSize, String search, Long categoryId) {
-        PageRequest pageRequest = PageRequest.of(page - 1, pageSize, Sort.by("id").descending());
-
+    public ResultPaginationDTO getProducts(int page, int pageSize, String search, Long categoryId, String cursor,
+            boolean withTotal) {
         Specification<Product> spec = (root, query, cb) -> {
             var predicate = cb.conjunction();
             if (search != null && !search.isEmpty()) {
@@ -59,17 +72,27 @@ public class ProductService {
             return predicate;
         };
 
-        Page<Product> productPage = productRepo.findAll(spec, pageRequest);
+        // Chế độ cursor: seek theo id DESC, không COUNT / LIMIT offset
+        if (cursor != null) {
+            return toCursorResult(Keyset.fetch(productRepo, spec, "id", Sort.Direction.DESC,
+                    cursor, pageSize, null, Product::getId), pageSize);
+        }
 
-        List<ProductDTO> productDTOs = productPage.getContent().stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        PageRequest pageRequest = PageRequest.of(page - 1, pageSize, Sort.by("id").descending());
+        Slice<Product> productPage = sliceQuery.find(Product.class, spec, pageRequest);
+
+        List<ProductDTO> productDTOs = toDTOs(productPage.getContent());
 
         ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
         meta.setPage(page);
         meta.setPageSize(pageSize);
-        meta.setPages(productPage.getTotalPages());
-        meta.setTotal(productPage.getTotalElements());
+        meta.setHasNext(productPage.hasNext());
+        if (withTotal) {
+            long total = countCache.count(CountCache.PRODUCTS, countKey(search, categoryId),
+                    () -> productRepo.count(spec));
+            meta.setTotal(total);
+            meta.setPages((int) Math.ceil((double) total / pageSize));
+        }
 
         ResultPaginationDTO result = new ResultPaginationDTO();
         result.setMeta(meta);
@@ -131,10 +154,12 @@ public class ProductService {
         p.setCategory(category);
 
         productRepo.save(p);
+        countCache.invalidate(CountCache.PRODUCTS);
         return toDTO(p);
     }
 
     // UPDATE
+    @Transactional
     public ProductDTO update(Long id, UpdateProductDTO req) {
         Product p = productRepo.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
@@ -145,8 +170,16 @@ public class ProductService {
             p.setOldPrice(req.getOldPrice());
         if (req.getSaleRate() != null)
             p.setSaleRate(req.getSaleRate());
-        if (req.getQuantity() != null)
-            p.setQuantity(req.getQuantity());
+        if (req.getQuantity() != null) {
+            if (Boolean.TRUE.equals(p.getHot())) {
+                // Product hot: quantity mới được chia lại vào các shard
+                stockShardService.redistribute(id, req.getQuantity());
+                p.setQuantity(0);
+            } else {
+                p.setQuantity(req.getQuantity());
+            }
+            inventoryEngine.overwrite(id, req.getQuantity());
+        }
         if (req.getDescription() != null)
             p.setDescription(req.getDescription());
         if (req.getImageUrl() != null && !req.getImageUrl().isEmpty()) {
@@ -159,6 +192,11 @@ public class ProductService {
             p.setCategory(category);
         }
 
+        // name / category là các cột lọc của list → count cũ không còn đúng
+        if (req.getName() != null || req.getCategoryId() != null) {
+            countCache.invalidate(CountCache.PRODUCTS);
+        }
+
         if (req.getModelUrl() != null && !req.getModelUrl().isBlank()) {
             ProductARModel arModel = p.getArModel();
 
@@ -171,6 +209,11 @@ public class ProductService {
             arModel.setGlbUrl(req.getModelUrl());
         }
 
+        // Stock / giá đổi → báo cho người đang xem product
+        if (req.getQuantity() != null || req.getOldPrice() != null || req.getSaleRate() != null) {
+            productStockBroadcaster.markChanged(List.of(id));
+        }
+
         productRepo.save(p);
         return toDTO(p);
     }
@@ -183,6 +226,7 @@ public class ProductService {
         List<String> imageUrls = p.getImageUrl();
         // / Xóa product khỏi DB trước
         productRepo.deleteById(id);
+        countCache.invalidate(CountCache.PRODUCTS);
         // Sau đó xóa ảnh trên S3 (ngoài transaction)
         if (imageUrls != null && !imageUrls.isEmpty()) {
             for (String imageUrl : imageUrls) {
@@ -207,8 +251,36 @@ public class ProductService {
         }
     }
 
-    // Convert Entity -> DTO
+    // Convert Entity -> DTO (stock của cả danh sách lấy 1 lần)
+    private List<ProductDTO> toDTOs(List<Product> products) {
+        Map<Long, Integer> stock = inventoryEngine.available(products);
+        Map<Long, Integer> reserved = reservedQuantities(products);
+        return products.stream()
+                .map(p -> toDTO(p, stock.getOrDefault(p.getId(), 0), reserved.getOrDefault(p.getId(), 0)))
+                .collect(Collectors.toList());
+    }
+
     private ProductDTO toDTO(Product p) {
+        List<Product> single = List.of(p);
+        return toDTO(p,
+                inventoryEngine.available(single).getOrDefault(p.getId(), 0),
+                reservedQuantities(single).getOrDefault(p.getId(), 0));
+    }
+
+    // productId -> số lượng đang bị giữ bởi reservation ACTIVE (1 query cho cả danh sách)
+    private Map<Long, Integer> reservedQuantities(List<Product> products) {
+        Map<Long, Integer> reserved = new HashMap<>();
+        if (products.isEmpty()) {
+            return reserved;
+        }
+        List<Long> ids = products.stream().map(Product::getId).collect(Collectors.toList());
+        for (Object[] row : reservationItemRepo.sumQuantityByStatusAndProductIdIn(ReservationStatusEnum.ACTIVE, ids)) {
+            reserved.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return reserved;
+    }
+
+    private ProductDTO toDTO(Product p, int quantity, int reservedQuantity) {
         CategoryDTO categoryDTO = new CategoryDTO(
                 p.getCategory().getId(),
                 p.getCategory().getName());
@@ -232,7 +304,7 @@ public class ProductService {
                 p.getName(),
                 p.getOldPrice(),
                 p.getSaleRate(),
-                p.getQuantity(),
+                quantity,
                 p.getDescription(),
                 p.getCreatedAt(),
                 p.getUpdatedAt(),
@@ -240,34 +312,98 @@ public class ProductService {
                 p.getUpdatedBy(),
                 p.getImageUrl(),
                 arDto,
-                categoryDTO);
+                categoryDTO,
+                Boolean.TRUE.equals(p.getHot()),
+                reservedQuantity);
     }
 
-    public Product getAndValidateProduct(Long productId, int qty) {
-        Product p = productRepo.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+    /**
+     * Lấy toàn bộ product của một đơn kèm category.
+     * Nếu inventory engine lock row products (engine database) thì dùng
+     * SELECT ... FOR UPDATE theo thứ tự id và validate stock của tất cả
+     * trước khi trừ bất kỳ dòng nào. Product hot không bị lock row products
+     * (stock nằm ở shard) nên được load riêng, không lock.
+     *
+     * @param quantities productId -> tổng số lượng cần (đã gộp các dòng trùng)
+     * @return productId -> product
+     */
+    public Map<Long, Product> getProductsForCheckout(Map<Long, Integer> quantities) {
+        return getProductsForCheckout(quantities.keySet(), quantities);
+    }
 
-        if (p.getQuantity() < qty) {
-            throw new RuntimeException("Not enough stock for product " + productId);
+    /**
+     * Như trên nhưng chỉ validate stock cho phần số lượng cần trừ thêm
+     * (vd: phần đã được reservation giữ sẵn thì không cần kiểm tra lại).
+     *
+     * @param productIds toàn bộ product của đơn
+     * @param quantities productId -> số lượng cần trừ thêm
+     */
+    public Map<Long, Product> getProductsForCheckout(Collection<Long> productIds, Map<Long, Integer> quantities) {
+        boolean locked = inventoryEngine.locksProductRows();
+        List<Product> found = new ArrayList<>();
+        if (locked) {
+            List<Long> coldIds = new ArrayList<>();
+            List<Long> hotIds = new ArrayList<>();
+            for (Long productId : productIds) {
+                (stockShardService.isHot(productId) ? hotIds : coldIds).add(productId);
+            }
+            if (!hotIds.isEmpty()) {
+                for (Product p : productRepo.findAllWithCategoryByIdIn(hotIds)) {
+                    if (Boolean.TRUE.equals(p.getHot())) {
+                        found.add(p);
+                    } else {
+                        // Danh sách hot của node này chưa refresh (shard vừa bị disable) -> lock như cold
+                        coldIds.add(p.getId());
+                    }
+                }
+            }
+            // Lock sau cùng, 1 query theo thứ tự id
+            if (!coldIds.isEmpty()) {
+                found.addAll(productRepo.findAllByIdInForUpdate(coldIds));
+            }
+        } else {
+            found.addAll(productRepo.findAllWithCategoryByIdIn(productIds));
         }
 
-        return p;
-    }
+        Map<Long, Product> products = new HashMap<>();
+        for (Product p : found) {
+            products.put(p.getId(), p);
+        }
 
-    public void deductStock(Product p, int quantity) {
-        p.setQuantity(p.getQuantity() - quantity);
-        productRepo.save(p);
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new RuntimeException("Product not found");
+            }
+        }
+
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Product p = products.get(entry.getKey());
+            if (locked && !Boolean.TRUE.equals(p.getHot()) && p.getQuantity() < entry.getValue()) {
+                throw new RuntimeException("Not enough stock for product " + entry.getKey());
+            }
+        }
+
+        return products;
     }
 
-    @Transactional
-    public void increaseStock(Product product, int quantity) {
-        product.setQuantity(product.getQuantity() + quantity);
-        productRepo.save(product);
+    /**
+     * Trừ stock cho cả đơn qua inventory engine (all-or-nothing).
+     */
+    public void reserveStock(Map<Long, Integer> quantities) {
+        inventoryEngine.reserve(quantities);
+        productStockBroadcaster.markChanged(quantities.keySet());
     }
 
-    public ResultPaginationDTO getProductsWithCategory(int page, int size, Long categoryId) {
-        PageRequest pageRequest = PageRequest.of(page, size, Sort.by("id").ascending());
+    /**
+     * Hoàn stock khi hủy đơn qua inventory engine.
+     */
+    public void releaseStock(Map<Long, Integer> quantities) {
+        inventoryEngine.release(quantities);
+        productStockBroadcaster.markChanged(quantities.keySet());
+    }
 
+    public ResultPaginationDTO getProductsWithCategory(int page, int size, Long categoryId, String cursor,
+            boolean withTotal) {
         Specification<Product> spec = (root, query, cb) -> {
             if (categoryId != null) {
                 return cb.equal(root.get("category").get("id"), categoryId);
@@ -275,17 +411,26 @@ public class ProductService {
             return cb.conjunction();
         };
 
-        Page<Product> pageProduct = productRepo.findAll(spec, pageRequest);
+        if (cursor != null) {
+            return toCursorResult(Keyset.fetch(productRepo, spec, "id", Sort.Direction.ASC,
+                    cursor, size, null, Product::getId), size);
+        }
 
-        List<ProductDTO> productDTOs = pageProduct.getContent().stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by("id").ascending());
+        Slice<Product> pageProduct = sliceQuery.find(Product.class, spec, pageRequest);
+
+        List<ProductDTO> productDTOs = toDTOs(pageProduct.getContent());
 
         ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
         meta.setPage(page + 1);
         meta.setPageSize(size);
-        meta.setPages(pageProduct.getTotalPages());
-        meta.setTotal(pageProduct.getTotalElements());
+        meta.setHasNext(pageProduct.hasNext());
+        if (withTotal) {
+            long total = countCache.count(CountCache.PRODUCTS, countKey(null, categoryId),
+                    () -> productRepo.count(spec));
+            meta.setTotal(total);
+            meta.setPages((int) Math.ceil((double) total / size));
+        }
 
         ResultPaginationDTO result = new ResultPaginationDTO();
         result.setMeta(meta);
@@ -293,4 +438,22 @@ public class ProductService {
 
         return result;
     }
+
+    // Cùng bộ lọc (search, category) thì dùng chung count trong cache
+    private String countKey(String search, Long categoryId) {
+        String keyword = search == null || search.isEmpty() ? "" : search.toLowerCase();
+        return keyword + "|" + (categoryId == null ? "" : categoryId);
+    }
+
+    private ResultPaginationDTO toCursorResult(Keyset.Page<Product> productPage, int size) {
+        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
+        meta.setPageSize(size);
+        meta.setNextCursor(productPage.getNextCursor());
+
+        ResultPaginationDTO result = new ResultPaginationDTO();
+        result.setMeta(meta);
+        result.setResult(toDTOs(productPage.getContent()));
+
+        return result;
+    }
 }
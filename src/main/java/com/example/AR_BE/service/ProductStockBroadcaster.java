@@ -0,0 +1,154 @@
+package com.example.AR_BE.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.AR_BE.domain.dto.ProductStockEventDTO;
+import com.example.AR_BE.repository.ProductRepository;
+import com.example.AR_BE.repository.StockReservationItemRepository;
+import com.example.AR_BE.repository.projection.ProductStockView;
+import com.example.AR_BE.service.inventory.InventoryEngine;
+import com.example.AR_BE.utils.constants.ReservationStatusEnum;
+import com.example.AR_BE.utils.pricing.PriceCalculator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Broadcast stock / giá của product tới /topic/products/{id}.
+ *
+ * Các thay đổi chỉ đánh dấu productId là "dirty" (sau commit); mỗi cửa sổ
+ * app.websocket.products.coalesce-ms (mặc định 250ms) gửi 1 message cho mỗi
+ * product dirty với giá trị mới nhất, đọc 1 lần cho cả nhóm. Flash sale
+ * hàng nghìn lần trừ stock/giây vẫn chỉ tạo tối đa ~4 message/giây/product.
+ */
+@Service
+public class ProductStockBroadcaster {
+
+    public static final String TOPIC_PREFIX = "/topic/products/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ProductRepository productRepository;
+    private final StockReservationItemRepository reservationItemRepository;
+    private final InventoryEngine inventoryEngine;
+    private final PriceCalculator priceCalculator;
+    private final TransactionTemplate readTransaction;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final Counter sentCounter;
+
+    public ProductStockBroadcaster(SimpMessagingTemplate messagingTemplate, ProductRepository productRepository,
+            StockReservationItemRepository reservationItemRepository, InventoryEngine inventoryEngine,
+            PriceCalculator priceCalculator, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.productRepository = productRepository;
+        this.reservationItemRepository = reservationItemRepository;
+        this.inventoryEngine = inventoryEngine;
+        this.priceCalculator = priceCalculator;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        meterRegistry.gauge("products.broadcast.dirty", dirty, Set::size);
+        this.sentCounter = meterRegistry.counter("products.broadcast.sent");
+    }
+
+    /**
+     * Đánh dấu product đổi stock / giá; được gửi ở cửa sổ kế tiếp sau khi transaction commit.
+     */
+    public void markChanged(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(productIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty.addAll(ids);
+                }
+            });
+        } else {
+            dirty.addAll(ids);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.products.coalesce-ms:250}")
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        // 1. Lấy ra các product dirty của cửa sổ này
+        List<Long> ids = new ArrayList<>();
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext();) {
+            ids.add(it.next());
+            it.remove();
+        }
+
+        // 2. Đọc stock + giá mới nhất cho cả nhóm
+        List<ProductStockEventDTO> events;
+        try {
+            events = readTransaction.execute(status -> snapshot(ids));
+        } catch (RuntimeException e) {
+            // Đọc lỗi → trả lại dirty để lần flush sau gửi, không mất thay đổi
+            dirty.addAll(ids);
+            throw e;
+        }
+
+        // 3. Gửi (không có ai subscribe thì broker bỏ qua)
+        for (ProductStockEventDTO event : events) {
+            messagingTemplate.convertAndSend(TOPIC_PREFIX + event.getProductId(), event);
+            sentCounter.increment();
+        }
+    }
+
+    private List<ProductStockEventDTO> snapshot(List<Long> ids) {
+        // Chỉ các cột cần gửi, không hydrate entity
+        List<ProductStockView> products = productRepository.findStockViewsByIdIn(ids);
+        if (products.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Integer> quantities = new HashMap<>();
+        List<Long> hotIds = new ArrayList<>();
+        for (ProductStockView p : products) {
+            quantities.put(p.getId(), p.getQuantity() != null ? p.getQuantity() : 0);
+            if (Boolean.TRUE.equals(p.getHot())) {
+                hotIds.add(p.getId());
+            }
+        }
+        Map<Long, Integer> stock = inventoryEngine.available(quantities, hotIds);
+        Map<Long, Integer> reserved = new HashMap<>();
+        for (Object[] row : reservationItemRepository.sumQuantityByStatusAndProductIdIn(
+                ReservationStatusEnum.ACTIVE, ids)) {
+            reserved.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+
+        Instant now = Instant.now();
+        List<ProductStockEventDTO> events = new ArrayList<>();
+        for (ProductStockView p : products) {
+            ProductStockEventDTO event = new ProductStockEventDTO();
+            event.setProductId(p.getId());
+            event.setQuantity(stock.getOrDefault(p.getId(), 0));
+            event.setReservedQuantity(reserved.getOrDefault(p.getId(), 0));
+            event.setOldPrice(p.getOldPrice());
+            event.setSaleRate(p.getSaleRate());
+            event.setPrice(priceCalculator.calculatePrice(p.getOldPrice(), p.getSaleRate()));
+            event.setUpdatedAt(now);
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.AR_BE.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Đối soát định kỳ, ghi lệch vào reconciliation_drifts:
+ *
+ * - STOCK: quét products theo khoảng id. Stock hiện tại (quantity + shard + ledger
+ *   chưa flush) phải bằng stock mốc trừ số lượng đã giữ / bán thêm từ lúc lấy mốc
+ *   (order_items của đơn chưa hủy + reservation ACTIVE). Chỉ báo cáo, sửa bằng cách
+ *   admin ghi đè quantity (product đổi updated_at → lấy mốc lại).
+ * - ORDER_TOTAL: quét orders theo khoảng id, so total_amount với
+ *   SUM(price_at_purchase * quantity); sửa khi app.reconciliation.repair-order-totals=true.
+ *
+ * Mỗi chunk 1 transaction REPEATABLE READ: đọc snapshot nhất quán không lock,
+ * chỉ lock row order được sửa tới hết chunk. Các chunk chạy trên ForkJoinPool
+ * giới hạn app.reconciliation.parallelism (= số connection dùng thêm), theo đợt;
+ * xong mỗi đợt lưu next_id vào reconciliation_checkpoints → crash thì lần sau chạy tiếp.
+ */
+@Service
+public class ReconciliationService {
+
+    public static final String JOB_STOCK = "STOCK";
+    public static final String JOB_ORDER_TOTAL = "ORDER_TOTAL";
+
+    // total_amount là Double cộng trong Java, lệch dưới mức này coi như làm tròn
+    private static final double MONEY_TOLERANCE = 0.005;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+    private final MeterRegistry meterRegistry;
+    private final Counter failedCounter;
+    // Chủ lease của instance này
+    private final String owner = UUID.randomUUID().toString();
+
+    @Value("${app.reconciliation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reconciliation.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.reconciliation.parallelism:4}")
+    private int parallelism;
+
+    // Phải lớn hơn thời gian 1 đợt chunk, được gia hạn sau mỗi đợt
+    @Value("${app.reconciliation.lease-seconds:600}")
+    private int leaseSeconds;
+
+    @Value("${app.reconciliation.repair-order-totals:false}")
+    private boolean repairOrderTotals;
+
+    public ReconciliationService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.meterRegistry = meterRegistry;
+        this.failedCounter = meterRegistry.counter("reconciliation.failed");
+    }
+
+    @FunctionalInterface
+    private interface ChunkReconciler {
+        // @return số lệch phát hiện trong [fromId, toId)
+        int reconcile(long fromId, long toId);
+    }
+
+    private static final class Checkpoint {
+        private Long nextId;
+        private Long maxId;
+        private boolean finished;
+    }
+
+    private static final class Drift {
+        private final long refId;
+        private final double expected;
+        private final Double actual;
+        private final boolean repaired;
+
+        private Drift(long refId, double expected, Double actual, boolean repaired) {
+            this.refId = refId;
+            this.expected = expected;
+            this.actual = actual;
+            this.repaired = repaired;
+        }
+    }
+
+    @Scheduled(cron = "${app.reconciliation.cron:0 0 3 * * *}", zone = "${app.reports.zone:Asia/Ho_Chi_Minh}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        run(JOB_STOCK, "products", this::reconcileStock);
+        run(JOB_ORDER_TOTAL, "orders", this::reconcileOrderTotals);
+    }
+
+    private void run(String job, String table, ChunkReconciler reconciler) {
+        // 1. Giữ lease của job (instance khác đang chạy → bỏ qua)
+        int claimed = jdbcTemplate.update("UPDATE reconciliation_checkpoints"
+                + " SET lease_owner = ?, lease_until = UTC_TIMESTAMP(6) + INTERVAL ? SECOND"
+                + " WHERE job = ? AND (lease_until IS NULL OR lease_until < UTC_TIMESTAMP(6))",
+                owner, leaseSeconds, job);
+        if (claimed == 0) {
+            return;
+        }
+
+        try {
+            // 2. Lần trước đã xong → bắt đầu lần mới trên khoảng id hiện có
+            Checkpoint checkpoint = loadCheckpoint(job);
+            if (checkpoint.nextId == null || checkpoint.finished) {
+                jdbcTemplate.update("UPDATE reconciliation_checkpoints c, (SELECT COALESCE(MIN(id), 1) AS min_id,"
+                        + " COALESCE(MAX(id), 0) AS max_id FROM " + table + ") t"
+                        + " SET c.run_started_at = UTC_TIMESTAMP(6), c.next_id = t.min_id, c.max_id = t.max_id,"
+                        + " c.finished_at = NULL WHERE c.job = ?", job);
+                checkpoint = loadCheckpoint(job);
+            }
+
+            // 3. Mỗi đợt parallelism chunk liên tiếp; lỗi → dừng, giữ checkpoint cho lần sau
+            Counter driftCounter = meterRegistry.counter("reconciliation.drift", "job", job);
+            long next = checkpoint.nextId;
+            try (ForkJoinPool pool = new ForkJoinPool(parallelism)) {
+                while (next <= checkpoint.maxId) {
+                    List<Callable<Integer>> wave = new ArrayList<>();
+                    long waveEnd = next;
+                    for (int i = 0; i < parallelism && waveEnd <= checkpoint.maxId; i++) {
+                        long fromId = waveEnd;
+                        long toId = fromId + chunkSize;
+                        wave.add(() -> chunkTransaction.execute(status -> reconciler.reconcile(fromId, toId)));
+                        waveEnd = toId;
+                    }
+                    for (Future<Integer> result : pool.invokeAll(wave)) {
+                        driftCounter.increment(result.get());
+                    }
+                    next = waveEnd;
+                    jdbcTemplate.update("UPDATE reconciliation_checkpoints"
+                            + " SET next_id = ?, lease_until = UTC_TIMESTAMP(6) + INTERVAL ? SECOND"
+                            + " WHERE job = ? AND lease_owner = ?", next, leaseSeconds, job, owner);
+                }
+            }
+
+            jdbcTemplate.update("UPDATE reconciliation_checkpoints SET finished_at = UTC_TIMESTAMP(6)"
+                    + " WHERE job = ? AND lease_owner = ?", job, owner);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedCounter.increment();
+        } catch (ExecutionException | RuntimeException e) {
+            failedCounter.increment();
+        } finally {
+            jdbcTemplate.update("UPDATE reconciliation_checkpoints SET lease_owner = NULL, lease_until = NULL"
+                    + " WHERE job = ? AND lease_owner = ?", job, owner);
+        }
+    }
+
+    private Checkpoint loadCheckpoint(String job) {
+        return jdbcTemplate.query("SELECT next_id, max_id, finished_at FROM reconciliation_checkpoints WHERE job = ?",
+                rs -> {
+                    Checkpoint checkpoint = new Checkpoint();
+                    if (rs.next()) {
+                        checkpoint.nextId = rs.getObject("next_id", Long.class);
+                        checkpoint.maxId = rs.getObject("max_id", Long.class);
+                        checkpoint.finished = rs.getTimestamp("finished_at") != null;
+                    }
+                    return checkpoint;
+                }, job);
+    }
+
+    // ===== STOCK =====
+
+    private int reconcileStock(long fromId, long toId) {
+        // 1. Số lượng đã giữ / bán theo product: đơn chưa hủy (nóng + archive) + reservation ACTIVE
+        Map<Long, Long> committed = new HashMap<>();
+        String[] committedQueries = {
+                "SELECT oi.product_id, SUM(oi.quantity) FROM order_items oi JOIN orders o ON o.id = oi.order_id"
+                        + " WHERE oi.product_id >= ? AND oi.product_id < ? AND o.status <> 'CANCELLED'"
+                        + " GROUP BY oi.product_id",
+                "SELECT oi.product_id, SUM(oi.quantity) FROM order_items_archive oi"
+                        + " JOIN orders_archive o ON o.id = oi.order_id"
+                        + " WHERE oi.product_id >= ? AND oi.product_id < ? AND o.status <> 'CANCELLED'"
+                        + " GROUP BY oi.product_id",
+                "SELECT ri.product_id, SUM(ri.quantity) FROM stock_reservation_items ri"
+                        + " JOIN stock_reservations r ON r.id = ri.reservation_id"
+                        + " WHERE ri.product_id >= ? AND ri.product_id < ? AND r.status = 'ACTIVE'"
+                        + " GROUP BY ri.product_id" };
+        for (String sql : committedQueries) {
+            jdbcTemplate.query(sql, rs -> {
+                committed.merge(rs.getLong(1), rs.getLong(2), Long::sum);
+            }, fromId, toId);
+        }
+
+        // 2. Stock hiện tại + mốc
+        List<Object[]> baselines = new ArrayList<>();
+        List<Drift> drifts = new ArrayList<>();
+        jdbcTemplate.query("SELECT p.id, p.updated_at, COALESCE(p.quantity, 0)"
+                + " + COALESCE((SELECT SUM(s.quantity) FROM product_stock_shards s WHERE s.product_id = p.id), 0)"
+                + " + COALESCE((SELECT SUM(l.delta) FROM stock_ledger l WHERE l.product_id = p.id), 0) AS stock,"
+                + " b.stock AS base_stock, b.committed_units AS base_committed, b.product_updated_at AS base_updated_at"
+                + " FROM products p LEFT JOIN stock_baselines b ON b.product_id = p.id"
+                + " WHERE p.id >= ? AND p.id < ?", rs -> {
+                    long productId = rs.getLong("id");
+                    Timestamp updatedAt = rs.getTimestamp("updated_at");
+                    long stock = rs.getLong("stock");
+                    long units = committed.getOrDefault(productId, 0L);
+                    Long baseStock = rs.getObject("base_stock", Long.class);
+
+                    // Chưa có mốc / admin vừa sửa product → lấy mốc mới
+                    if (baseStock == null || !Objects.equals(updatedAt, rs.getTimestamp("base_updated_at"))) {
+                        baselines.add(new Object[] { productId, stock, units, updatedAt });
+                        return;
+                    }
+                    long expected = baseStock - (units - rs.getLong("base_committed"));
+                    if (stock != expected) {
+                        drifts.add(new Drift(productId, expected, (double) stock, false));
+                    }
+                }, fromId, toId);
+
+        if (!baselines.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO stock_baselines"
+                    + " (product_id, stock, committed_units, product_updated_at, taken_at)"
+                    + " VALUES (?, ?, ?, ?, UTC_TIMESTAMP(6)) ON DUPLICATE KEY UPDATE stock = VALUES(stock),"
+                    + " committed_units = VALUES(committed_units), product_updated_at = VALUES(product_updated_at),"
+                    + " taken_at = VALUES(taken_at)", baselines);
+        }
+        recordDrifts(JOB_STOCK, drifts);
+        return drifts.size();
+    }
+
+    // ===== ORDER_TOTAL =====
+
+    private int reconcileOrderTotals(long fromId, long toId) {
+        // 1. Đơn có total_amount khác tổng các dòng item
+        List<Drift> found = jdbcTemplate.query("SELECT o.id, o.total_amount,"
+                + " COALESCE(SUM(oi.price_at_purchase * oi.quantity), 0) AS items_total"
+                + " FROM orders o LEFT JOIN order_items oi ON oi.order_id = o.id"
+                + " WHERE o.id >= ? AND o.id < ? GROUP BY o.id, o.total_amount"
+                + " HAVING o.total_amount IS NULL OR ABS(o.total_amount - items_total) > ?",
+                (rs, rowNum) -> new Drift(rs.getLong("id"), rs.getDouble("items_total"),
+                        rs.getObject("total_amount", Double.class), false),
+                fromId, toId, MONEY_TOLERANCE);
+
+        // 2. Sửa (CAS theo giá trị đã đọc: đơn vừa bị sửa ở chỗ khác thì để lần sau)
+        List<Drift> drifts = new ArrayList<>(found.size());
+        for (Drift drift : found) {
+            boolean repaired = repairOrderTotals && jdbcTemplate.update(
+                    "UPDATE orders SET total_amount = ? WHERE id = ? AND total_amount <=> ?",
+                    drift.expected, drift.refId, drift.actual) == 1;
+            drifts.add(repaired ? new Drift(drift.refId, drift.expected, drift.actual, true) : drift);
+        }
+        recordDrifts(JOB_ORDER_TOTAL, drifts);
+        return drifts.size();
+    }
+
+    private void recordDrifts(String job, List<Drift> drifts) {
+        if (drifts.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(drifts.size());
+        for (Drift drift : drifts) {
+            rows.add(new Object[] { job, drift.refId, drift.expected, drift.actual, drift.repaired, job });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO reconciliation_drifts"
+                + " (job, run_started_at, ref_id, expected, actual, repaired, detected_at)"
+                + " SELECT ?, run_started_at, ?, ?, ?, ?, UTC_TIMESTAMP(6)"
+                + " FROM reconciliation_checkpoints WHERE job = ?", rows);
+    }
+}
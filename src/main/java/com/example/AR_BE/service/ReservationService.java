@@ -0,0 +1,347 @@
+package com.example.AR_BE.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.AR_BE.domain.Product;
+import com.example.AR_BE.domain.StockReservation;
+import com.example.AR_BE.domain.StockReservationItem;
+import com.example.AR_BE.domain.User;
+import com.example.AR_BE.domain.dto.ReservationDTO;
+import com.example.AR_BE.domain.dto.ReservationItemDTO;
+import com.example.AR_BE.domain.request.CreateReservationRequest;
+import com.example.AR_BE.domain.request.OrderItemRequest;
+import com.example.AR_BE.repository.StockReservationItemRepository;
+import com.example.AR_BE.repository.StockReservationRepository;
+import com.example.AR_BE.repository.UserRepository;
+import com.example.AR_BE.utils.ExpiryWheel;
+import com.example.AR_BE.utils.constants.ReservationStatusEnum;
+import com.example.AR_BE.utils.exception.IdInvalidException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Giữ hàng tạm thời cho giỏ hàng.
+ * Stock bị trừ ngay khi tạo reservation (qua InventoryEngine), createOrder
+ * chỉ cần chuyển reservation thành order. Reservation hết hạn được
+ * ExpiryWheel gom lại và trả stock theo batch.
+ *
+ * ExpiryWheel nằm trong RAM của từng node: node chết mà không restart thì
+ * reservation của nó được sweepOverdue (quét DB định kỳ) hết hạn thay.
+ */
+@Service
+public class ReservationService {
+
+    private final StockReservationRepository reservationRepository;
+    private final StockReservationItemRepository reservationItemRepository;
+    private final UserRepository userRepository;
+    private final ProductService productService;
+    private final UserCache userCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ExpiryWheel expiryWheel;
+
+    @Value("${app.reservation.default-hold-minutes:15}")
+    private int defaultHoldMinutes;
+
+    @Value("${app.reservation.max-hold-minutes:60}")
+    private int maxHoldMinutes;
+
+    @Value("${app.reservation.sweep.grace-seconds:60}")
+    private long sweepGraceSeconds;
+
+    @Value("${app.reservation.sweep.max-batches-per-run:50}")
+    private int sweepMaxBatches;
+
+    private final int expireBatchSize;
+
+    public ReservationService(StockReservationRepository reservationRepository,
+            StockReservationItemRepository reservationItemRepository,
+            UserRepository userRepository,
+            ProductService productService,
+            UserCache userCache,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.reservation.wheel.tick-ms:1000}") long tickMillis,
+            @Value("${app.reservation.wheel.size:512}") int wheelSize,
+            @Value("${app.reservation.expire-batch-size:200}") int expireBatchSize) {
+        this.reservationRepository = reservationRepository;
+        this.reservationItemRepository = reservationItemRepository;
+        this.userRepository = userRepository;
+        this.productService = productService;
+        this.userCache = userCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.expireBatchSize = expireBatchSize;
+        this.expiryWheel = new ExpiryWheel(tickMillis, wheelSize, expireBatchSize, this::expireBatch);
+    }
+
+    /**
+     * Kết quả chuyển reservation thành order.
+     * - extra: số lượng order cần trừ thêm (không được giữ sẵn)
+     * - leftover: số lượng giữ thừa, cần trả lại stock
+     */
+    public static class Conversion {
+        private final Map<Long, Integer> extra;
+        private final Map<Long, Integer> leftover;
+
+        public Conversion(Map<Long, Integer> extra, Map<Long, Integer> leftover) {
+            this.extra = extra;
+            this.leftover = leftover;
+        }
+
+        public Map<Long, Integer> getExtra() {
+            return extra;
+        }
+
+        public Map<Long, Integer> getLeftover() {
+            return leftover;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Nạp lại các reservation còn ACTIVE sau restart
+        for (Object[] row : reservationRepository.findIdAndExpiryByStatus(ReservationStatusEnum.ACTIVE)) {
+            expiryWheel.schedule((Long) row[0], (Instant) row[1]);
+        }
+        expiryWheel.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        expiryWheel.stop();
+    }
+
+    /**
+     * Dự phòng cho ExpiryWheel: hết hạn các reservation ACTIVE đã quá hạn hơn grace-seconds
+     * (wheel của node nào đó lẽ ra đã xử lý). Mỗi batch lock + kiểm tra lại trong expireBatch
+     * nên chạy cùng lúc trên nhiều node / cùng wheel vẫn chỉ trả stock 1 lần.
+     */
+    @Scheduled(fixedDelayString = "${app.reservation.sweep.interval-ms:60000}",
+            initialDelayString = "${app.reservation.sweep.interval-ms:60000}")
+    public void sweepOverdue() {
+        Instant cutoff = Instant.now().minusSeconds(sweepGraceSeconds);
+        for (int batch = 0; batch < sweepMaxBatches; batch++) {
+            List<Long> ids = reservationRepository.findIdsByStatusAndExpiresAtBefore(
+                    ReservationStatusEnum.ACTIVE, cutoff, PageRequest.of(0, expireBatchSize));
+            if (ids.isEmpty()) {
+                return;
+            }
+            expireBatch(ids);
+            if (ids.size() < expireBatchSize) {
+                return;
+            }
+        }
+    }
+
+    @Transactional
+    public ReservationDTO create(CreateReservationRequest req) {
+
+        // 1. Lấy user hiện tại từ token
+        User user = getCurrentUser();
+
+        // 2. Validate + gộp các dòng trùng productId
+        if (req == null || req.getItems() == null || req.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Items must not be empty");
+        }
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItemRequest itemReq : req.getItems()) {
+            if (itemReq.getProductId() == null || itemReq.getQuantity() == null || itemReq.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Invalid product or quantity");
+            }
+            quantities.merge(itemReq.getProductId(), itemReq.getQuantity(), Integer::sum);
+        }
+
+        // 3. Kiểm tra + trừ stock giống createOrder
+        Map<Long, Product> products = productService.getProductsForCheckout(quantities);
+        productService.reserveStock(quantities);
+
+        // 4. Lưu reservation
+        int holdMinutes = req.getHoldMinutes() != null && req.getHoldMinutes() > 0
+                ? Math.min(req.getHoldMinutes(), maxHoldMinutes)
+                : defaultHoldMinutes;
+
+        StockReservation reservation = new StockReservation();
+        reservation.setUser(user);
+        reservation.setStatus(ReservationStatusEnum.ACTIVE);
+        reservation.setExpiresAt(Instant.now().plus(Duration.ofMinutes(holdMinutes)));
+
+        List<StockReservationItem> items = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            StockReservationItem item = new StockReservationItem();
+            item.setReservation(reservation);
+            item.setProduct(products.get(entry.getKey()));
+            item.setQuantity(entry.getValue());
+            items.add(item);
+        }
+        reservation.setItems(items);
+        reservationRepository.save(reservation);
+
+        // 5. Chỉ đưa vào wheel khi đã commit
+        Long id = reservation.getId();
+        Instant expiresAt = reservation.getExpiresAt();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                expiryWheel.schedule(id, expiresAt);
+            }
+        });
+
+        return toDTO(reservation, quantities);
+    }
+
+    @Transactional
+    public ReservationDTO getReservation(Long reservationId) {
+        StockReservation reservation = findOwned(reservationId, false);
+        return toDTO(reservation, collectQuantities(reservation));
+    }
+
+    /**
+     * User tự hủy reservation ACTIVE → trả lại stock.
+     */
+    @Transactional
+    public ReservationDTO release(Long reservationId) {
+        StockReservation reservation = findOwned(reservationId, true);
+        if (reservation.getStatus() != ReservationStatusEnum.ACTIVE) {
+            throw new IdInvalidException("Reservation is not active");
+        }
+
+        Map<Long, Integer> quantities = collectQuantities(reservation);
+        reservation.setStatus(ReservationStatusEnum.RELEASED);
+        reservationRepository.save(reservation);
+        productService.releaseStock(quantities);
+
+        return toDTO(reservation, quantities);
+    }
+
+    /**
+     * Chuyển reservation thành order (gọi trong transaction của createOrder).
+     * Phần được giữ sẵn không cần trừ stock lại; phần order vượt quá
+     * reservation nằm trong extra, phần giữ thừa nằm trong leftover.
+     * Reservation đã quá hạn thì coi như không giữ gì.
+     */
+    public Conversion convert(Long reservationId, Long userId, Map<Long, Integer> quantities) {
+        StockReservation reservation = reservationRepository.findByIdForUpdate(reservationId)
+                .orElseThrow(() -> new IdInvalidException("Reservation not found"));
+        if (!reservation.getUser().getId().equals(userId)) {
+            throw new IdInvalidException("You cannot use this reservation");
+        }
+
+        Map<Long, Integer> extra = new LinkedHashMap<>(quantities);
+        Map<Long, Integer> leftover = new HashMap<>();
+
+        // Wheel đã trả stock → order phải trừ lại toàn bộ
+        if (reservation.getStatus() == ReservationStatusEnum.EXPIRED) {
+            return new Conversion(extra, leftover);
+        }
+        if (reservation.getStatus() != ReservationStatusEnum.ACTIVE) {
+            throw new IdInvalidException("Reservation is not active");
+        }
+
+        Map<Long, Integer> held = collectQuantities(reservation);
+
+        // Quá hạn nhưng wheel chưa kịp xử lý → hết hạn luôn tại đây
+        if (!reservation.getExpiresAt().isAfter(Instant.now())) {
+            reservation.setStatus(ReservationStatusEnum.EXPIRED);
+            reservationRepository.save(reservation);
+            return new Conversion(extra, held);
+        }
+
+        for (Map.Entry<Long, Integer> entry : held.entrySet()) {
+            int requested = quantities.getOrDefault(entry.getKey(), 0);
+            int covered = Math.min(requested, entry.getValue());
+            if (requested - covered > 0) {
+                extra.put(entry.getKey(), requested - covered);
+            } else {
+                extra.remove(entry.getKey());
+            }
+            if (entry.getValue() - covered > 0) {
+                leftover.put(entry.getKey(), entry.getValue() - covered);
+            }
+        }
+
+        reservation.setStatus(ReservationStatusEnum.CONVERTED);
+        reservationRepository.save(reservation);
+
+        return new Conversion(extra, leftover);
+    }
+
+    /**
+     * Handler của ExpiryWheel (chạy trên thread của wheel).
+     * Lock các reservation còn ACTIVE đã quá hạn, đánh dấu EXPIRED
+     * và trả stock gộp theo product trong 1 transaction.
+     */
+    void expireBatch(List<Long> reservationIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<StockReservation> expired = reservationRepository.findExpiredForUpdate(
+                    reservationIds, ReservationStatusEnum.ACTIVE, Instant.now());
+            if (expired.isEmpty()) {
+                return;
+            }
+
+            List<Long> ids = new ArrayList<>();
+            for (StockReservation reservation : expired) {
+                reservation.setStatus(ReservationStatusEnum.EXPIRED);
+                ids.add(reservation.getId());
+            }
+            reservationRepository.saveAll(expired);
+
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (Object[] row : reservationItemRepository.findQuantitiesByReservationIdIn(ids)) {
+                quantities.merge((Long) row[0], (Integer) row[1], Integer::sum);
+            }
+            productService.releaseStock(quantities);
+        });
+    }
+
+    private StockReservation findOwned(Long reservationId, boolean forUpdate) {
+        User user = getCurrentUser();
+        StockReservation reservation = (forUpdate
+                ? reservationRepository.findByIdForUpdate(reservationId)
+                : reservationRepository.findById(reservationId))
+                .orElseThrow(() -> new IdInvalidException("Reservation not found"));
+        if (!reservation.getUser().getId().equals(user.getId())) {
+            throw new IdInvalidException("You cannot access this reservation");
+        }
+        return reservation;
+    }
+
+    // Id lấy từ token; reservation chỉ cần reference tới users
+    private User getCurrentUser() {
+        return userRepository.getReferenceById(userCache.currentUser().getId());
+    }
+
+    private Map<Long, Integer> collectQuantities(StockReservation reservation) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (StockReservationItem item : reservation.getItems()) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    private ReservationDTO toDTO(StockReservation reservation, Map<Long, Integer> quantities) {
+        ReservationDTO dto = new ReservationDTO();
+        dto.setReservationId(reservation.getId());
+        dto.setStatus(reservation.getStatus().name());
+        dto.setExpiresAt(reservation.getExpiresAt());
+        dto.setItems(quantities.entrySet().stream()
+                .map(e -> new ReservationItemDTO(e.getKey(), e.getValue()))
+                .toList());
+        return dto;
+    }
+}
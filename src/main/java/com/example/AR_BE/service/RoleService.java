@@ -3,8 +3,9 @@ package com.example.AR_BE.service;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import com.example.AR_BE.domain.Permission;
@@ -13,15 +14,25 @@ import org.springframework.stereotype.Service;
 import com.example.AR_BE.domain.response.ResultPaginationDTO;
 import com.example.AR_BE.repository.PermissionRepository;
 import com.example.AR_BE.repository.RoleRepository;
+import com.example.AR_BE.utils.pagination.CountCache;
+import com.example.AR_BE.utils.pagination.Keyset;
+import com.example.AR_BE.utils.pagination.SliceQuery;
 
 @Service
 public class RoleService {
     private final RoleRepository roleRepository;
     private final PermissionRepository permissionRepository;
+    private final SliceQuery sliceQuery;
+    private final CountCache countCache;
+    private final UserCache userCache;
 
-    public RoleService(RoleRepository roleRepository, PermissionRepository permissionRepository) {
+    public RoleService(RoleRepository roleRepository, PermissionRepository permissionRepository,
+            SliceQuery sliceQuery, CountCache countCache, UserCache userCache) {
         this.roleRepository = roleRepository;
         this.permissionRepository = permissionRepository;
+        this.sliceQuery = sliceQuery;
+        this.countCache = countCache;
+        this.userCache = userCache;
     }
 
     public boolean existByName(Role role) {
@@ -34,6 +45,7 @@ public class RoleService {
             List<Permission> dbPermissions = this.permissionRepository.findByIdIn(resPermissions);
             role.setPermissions(dbPermissions);
         }
+        this.countCache.invalidate(CountCache.ROLES);
         return this.roleRepository.save(role);
     }
 
@@ -52,25 +64,51 @@ public class RoleService {
         existingRole.setDescription(role.getDescription());
         existingRole.setActive(role.isActive());
         existingRole.setPermissions(role.getPermissions());
+        this.countCache.invalidate(CountCache.ROLES);
+        this.userCache.invalidateAll();
         return this.roleRepository.save(existingRole);
 
     }
 
     public void delete(Long id) {
         this.roleRepository.deleteById(id);
+        this.countCache.invalidate(CountCache.ROLES);
+        this.userCache.invalidateAll();
     }
 
-    public ResultPaginationDTO fetchRoles(Specification<Role> spec, Pageable pageable) {
-        Page<Role> roles = this.roleRepository.findAll(spec, pageable);
+    /**
+     * @param filter    chuỗi filter gốc của request, làm key cho count cache
+     * @param withTotal false = chỉ trả hasNext, không COUNT
+     */
+    public ResultPaginationDTO fetchRoles(Specification<Role> spec, String filter, Pageable pageable,
+            boolean withTotal) {
+        Slice<Role> roles = this.sliceQuery.find(Role.class, spec, pageable);
         ResultPaginationDTO res = new ResultPaginationDTO();
         ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
         meta.setPage(pageable.getPageNumber() + 1);
         meta.setPageSize(pageable.getPageSize());
-        meta.setPages(roles.getTotalPages());
-        meta.setTotal(roles.getTotalElements());
+        meta.setHasNext(roles.hasNext());
+        if (withTotal) {
+            long total = this.countCache.count(CountCache.ROLES, filter, () -> this.roleRepository.count(spec));
+            meta.setTotal(total);
+            meta.setPages((int) Math.ceil((double) total / pageable.getPageSize()));
+        }
         res.setMeta(meta);
         res.setResult(roles.getContent());
         return res;
 
     }
+
+    // Chế độ cursor: seek theo id, không COUNT / LIMIT offset
+    public ResultPaginationDTO fetchRolesByCursor(Specification<Role> spec, String cursor, int size) {
+        Keyset.Page<Role> roles = Keyset.fetch(this.roleRepository, spec, "id", Sort.Direction.ASC,
+                cursor, size, null, Role::getId);
+        ResultPaginationDTO res = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
+        meta.setPageSize(size);
+        meta.setNextCursor(roles.getNextCursor());
+        res.setMeta(meta);
+        res.setResult(roles.getContent());
+        return res;
+    }
 }
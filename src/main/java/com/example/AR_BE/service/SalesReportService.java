@@ -0,0 +1,194 @@
+package com.example.AR_BE.service;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.AR_BE.domain.dto.SalesRollupDTO;
+import com.example.AR_BE.domain.dto.SalesRollupRebuildDTO;
+import com.example.AR_BE.utils.constants.RoleEnum;
+import com.example.AR_BE.utils.constants.SalesDimensionEnum;
+import com.example.AR_BE.utils.exception.IdInvalidException;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Báo cáo doanh số cho ADMIN, chỉ đọc sales_rollup_hourly / sales_rollup_daily:
+ * chi phí theo số ngày x số category/product, không theo số đơn.
+ * Số liệu trễ tối đa 1 chu kỳ fold (app.reports.rollup.fold-interval-ms).
+ */
+@Service
+@RequiredArgsConstructor
+public class SalesReportService {
+
+    private static final String[] TOTAL_COLUMNS = {
+            "placed_orders", "placed_units", "placed_revenue",
+            "cancelled_orders", "cancelled_units", "cancelled_revenue",
+            "delivered_orders", "delivered_units", "delivered_revenue" };
+
+    // bucket_start ghi theo UTC (SalesRollupService)
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SalesRollupService salesRollupService;
+    private final UserCache userCache;
+
+    @Value("${app.reports.max-days:366}")
+    private int maxDays;
+
+    @Value("${app.reports.max-hours:168}")
+    private int maxHours;
+
+    /**
+     * Theo ngày trong [from, to], mỗi dòng 1 (ngày, category/product).
+     */
+    public List<SalesRollupDTO> getDaily(LocalDate from, LocalDate to, String dimension) {
+        checkAdmin();
+        SalesDimensionEnum dim = parseDimension(dimension);
+        checkDays(from, to);
+
+        String sql = "SELECT r.bucket_date, r.dimension_id, d.name, " + columns("r.", "")
+                + " FROM sales_rollup_daily r LEFT JOIN " + nameTable(dim) + " d ON d.id = r.dimension_id"
+                + " WHERE r.dimension = ? AND r.bucket_date BETWEEN ? AND ?"
+                + " ORDER BY r.bucket_date, r.dimension_id";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            SalesRollupDTO dto = toDTO(rs, dim);
+            dto.setDate(rs.getDate("bucket_date").toLocalDate());
+            return dto;
+        }, dim.name(), Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Theo giờ trong [from, to), có thể lọc 1 category/product.
+     */
+    public List<SalesRollupDTO> getHourly(Instant from, Instant to, String dimension, Long dimensionId) {
+        checkAdmin();
+        SalesDimensionEnum dim = parseDimension(dimension);
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IdInvalidException("Khoảng thời gian không hợp lệ");
+        }
+        if (Duration.between(from, to).toHours() > maxHours) {
+            throw new IdInvalidException("Tối đa " + maxHours + " giờ mỗi lần xem");
+        }
+
+        String sql = "SELECT r.bucket_start, r.dimension_id, d.name, " + columns("r.", "")
+                + " FROM sales_rollup_hourly r LEFT JOIN " + nameTable(dim) + " d ON d.id = r.dimension_id"
+                + " WHERE r.dimension = ? AND r.bucket_start >= ? AND r.bucket_start < ?"
+                + (dimensionId != null ? " AND r.dimension_id = ?" : "")
+                + " ORDER BY r.bucket_start, r.dimension_id";
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setString(1, dim.name());
+            ps.setTimestamp(2, Timestamp.from(from.truncatedTo(ChronoUnit.HOURS)), Calendar.getInstance(UTC));
+            ps.setTimestamp(3, Timestamp.from(to), Calendar.getInstance(UTC));
+            if (dimensionId != null) {
+                ps.setLong(4, dimensionId);
+            }
+            return ps;
+        }, (rs, rowNum) -> {
+            SalesRollupDTO dto = toDTO(rs, dim);
+            dto.setHour(rs.getTimestamp("bucket_start", Calendar.getInstance(UTC)).toInstant());
+            return dto;
+        });
+    }
+
+    /**
+     * Top category/product theo doanh thu net trong [from, to] (cộng các dòng rollup ngày).
+     */
+    public List<SalesRollupDTO> getTop(LocalDate from, LocalDate to, String dimension, int limit) {
+        checkAdmin();
+        SalesDimensionEnum dim = parseDimension(dimension);
+        checkDays(from, to);
+        if (limit < 1 || limit > 100) {
+            throw new IdInvalidException("limit phải trong khoảng 1-100");
+        }
+
+        String sql = "SELECT t.dimension_id, d.name, " + columns("t.", "")
+                + " FROM (SELECT dimension_id, " + columns("SUM(", ")")
+                + " FROM sales_rollup_daily WHERE dimension = ? AND bucket_date BETWEEN ? AND ?"
+                + " GROUP BY dimension_id) t"
+                + " LEFT JOIN " + nameTable(dim) + " d ON d.id = t.dimension_id"
+                + " ORDER BY t.placed_revenue - t.cancelled_revenue DESC, t.dimension_id"
+                + " LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> toDTO(rs, dim),
+                dim.name(), Date.valueOf(from), Date.valueOf(to), limit);
+    }
+
+    /**
+     * ADMIN tính lại rollup của [from, to] từ orders.
+     */
+    public SalesRollupRebuildDTO rebuild(LocalDate from, LocalDate to) {
+        checkAdmin();
+        return salesRollupService.rebuild(from, to);
+    }
+
+    private void checkAdmin() {
+        if (userCache.currentUser().getRoleEnum() != RoleEnum.ADMIN) {
+            throw new IdInvalidException("Chỉ ADMIN mới có quyền xem báo cáo");
+        }
+    }
+
+    private void checkDays(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IdInvalidException("Khoảng ngày không hợp lệ");
+        }
+        if (ChronoUnit.DAYS.between(from, to) + 1 > maxDays) {
+            throw new IdInvalidException("Tối đa " + maxDays + " ngày mỗi lần xem");
+        }
+    }
+
+    private static SalesDimensionEnum parseDimension(String dimension) {
+        try {
+            return SalesDimensionEnum.valueOf(dimension.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IdInvalidException("dimension không hợp lệ: " + dimension);
+        }
+    }
+
+    private static String nameTable(SalesDimensionEnum dim) {
+        return dim == SalesDimensionEnum.CATEGORY ? "categories" : "products";
+    }
+
+    // "r.placed_orders, ..." hoặc "SUM(placed_orders) AS placed_orders, ..."
+    private static String columns(String before, String after) {
+        List<String> parts = new ArrayList<>();
+        for (String column : TOTAL_COLUMNS) {
+            parts.add(after.isEmpty() ? before + column : before + column + after + " AS " + column);
+        }
+        return String.join(", ", parts);
+    }
+
+    private static SalesRollupDTO toDTO(ResultSet rs, SalesDimensionEnum dim) throws SQLException {
+        SalesRollupDTO dto = new SalesRollupDTO();
+        dto.setDimension(dim.name());
+        dto.setDimensionId(rs.getLong("dimension_id"));
+        dto.setName(rs.getString("name"));
+        dto.setPlacedOrders(rs.getLong("placed_orders"));
+        dto.setPlacedUnits(rs.getLong("placed_units"));
+        dto.setPlacedRevenue(rs.getDouble("placed_revenue"));
+        dto.setCancelledOrders(rs.getLong("cancelled_orders"));
+        dto.setCancelledUnits(rs.getLong("cancelled_units"));
+        dto.setCancelledRevenue(rs.getDouble("cancelled_revenue"));
+        dto.setDeliveredOrders(rs.getLong("delivered_orders"));
+        dto.setDeliveredUnits(rs.getLong("delivered_units"));
+        dto.setDeliveredRevenue(rs.getDouble("delivered_revenue"));
+        dto.setNetOrders(dto.getPlacedOrders() - dto.getCancelledOrders());
+        dto.setNetUnits(dto.getPlacedUnits() - dto.getCancelledUnits());
+        dto.setNetRevenue(dto.getPlacedRevenue() - dto.getCancelledRevenue());
+        return dto;
+    }
+}
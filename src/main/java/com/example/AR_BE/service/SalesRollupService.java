@@ -0,0 +1,490 @@
+package com.example.AR_BE.service;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.AR_BE.domain.Order;
+import com.example.AR_BE.domain.OrderItem;
+import com.example.AR_BE.domain.dto.SalesRollupRebuildDTO;
+import com.example.AR_BE.utils.constants.SalesDimensionEnum;
+import com.example.AR_BE.utils.constants.SalesRollupKindEnum;
+import com.example.AR_BE.utils.constants.StatusEnum;
+import com.example.AR_BE.utils.exception.IdInvalidException;
+
+/**
+ * Duy trì sales_rollup_hourly / sales_rollup_daily (doanh số, số đơn, số lượng
+ * theo category và product).
+ *
+ * - OrderService gọi orderPlaced / ordersCancelled / ordersDelivered trong
+ *   transaction của đơn: chỉ INSERT vào sales_rollup_deltas, không UPDATE row
+ *   rollup đang nóng (giờ hiện tại, category bán chạy) trong lúc checkout.
+ * - fold() định kỳ gom delta vào rollup (SKIP LOCKED → nhiều instance chạy song song được).
+ * - rebuild() tính lại 1 khoảng ngày từ orders, mỗi ngày 1 transaction, chạy song song.
+ *
+ * Bucket theo orders.created_at: giờ (UTC) và ngày theo app.reports.zone
+ * (zone phải lệch giờ chẵn để ngày = 24 bucket giờ). Đơn hủy / giao được tính
+ * vào bucket của ngày tạo đơn.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final String DELTA_COLUMNS =
+            "id, order_id, order_created_at, product_id, category_id, kind, sign, category_first, units, revenue";
+
+    // (orders, order_items) của đơn nóng và đơn đã archive (OrderArchiveService)
+    private static final String[][] ORDER_TABLES = {
+            { "orders", "order_items" }, { "orders_archive", "order_items_archive" } };
+
+    // orders.created_at được Hibernate ghi theo UTC
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zone;
+
+    @Value("${app.reports.rollup.fold-batch-size:5000}")
+    private int foldBatchSize;
+
+    @Value("${app.reports.rollup.rebuild-parallelism:4}")
+    private int rebuildParallelism;
+
+    @Value("${app.reports.rollup.rebuild-max-days:400}")
+    private int rebuildMaxDays;
+
+    public SalesRollupService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.reports.zone:Asia/Ho_Chi_Minh}") String zone) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.zone = ZoneId.of(zone);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    // 1 dòng (order, product) đã nhân dấu sign khi fold
+    private static final class Delta {
+        private long id;
+        private long orderId;
+        private Instant orderCreatedAt;
+        private long productId;
+        private long categoryId;
+        private SalesRollupKindEnum kind;
+        private int sign;
+        private int categoryFirst;
+        private int units;
+        private double revenue;
+    }
+
+    private static final class Key {
+        // Instant (giờ) hoặc LocalDate (ngày)
+        private final Comparable<?> bucket;
+        private final SalesDimensionEnum dimension;
+        private final long dimensionId;
+
+        private Key(Comparable<?> bucket, SalesDimensionEnum dimension, long dimensionId) {
+            this.bucket = bucket;
+            this.dimension = dimension;
+            this.dimensionId = dimensionId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && bucket.equals(other.bucket)
+                    && dimension == other.dimension && dimensionId == other.dimensionId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucket, dimension, dimensionId);
+        }
+    }
+
+    // Cộng dồn theo kind (index = ordinal)
+    private static final class Totals {
+        private final long[] orders = new long[SalesRollupKindEnum.values().length];
+        private final long[] units = new long[SalesRollupKindEnum.values().length];
+        private final double[] revenue = new double[SalesRollupKindEnum.values().length];
+    }
+
+    // ===== Ghi delta (trong transaction của OrderService) =====
+
+    /**
+     * Đơn vừa tạo (entity đã persist, có createdAt + items).
+     */
+    public void orderPlaced(Order order) {
+        List<Delta> deltas = new ArrayList<>();
+        Set<Long> seenCategories = new HashSet<>();
+        for (OrderItem item : order.getOrderItems()) {
+            Delta delta = new Delta();
+            delta.orderId = order.getId();
+            delta.orderCreatedAt = order.getCreatedAt();
+            delta.productId = item.getProduct().getId();
+            delta.categoryId = item.getProduct().getCategory() != null ? item.getProduct().getCategory().getId() : 0;
+            delta.kind = SalesRollupKindEnum.PLACED;
+            delta.sign = 1;
+            delta.categoryFirst = seenCategories.add(delta.categoryId) ? 1 : 0;
+            delta.units = item.getQuantity();
+            delta.revenue = item.getQuantity() * item.getPriceAtPurchase();
+            deltas.add(delta);
+        }
+        insertDeltas(deltas);
+    }
+
+    /**
+     * Các đơn vừa chuyển sang CANCELLED.
+     *
+     * @param wereDelivered đơn đã DELIVERED trước khi hủy → trừ phần delivered
+     */
+    public void ordersCancelled(Collection<Long> orderIds, boolean wereDelivered) {
+        List<Delta> cancelled = loadOrderLines(orderIds, SalesRollupKindEnum.CANCELLED, 1);
+        List<Delta> deltas = new ArrayList<>(cancelled);
+        if (wereDelivered) {
+            for (Delta line : cancelled) {
+                Delta undo = copy(line);
+                undo.kind = SalesRollupKindEnum.DELIVERED;
+                undo.sign = -1;
+                deltas.add(undo);
+            }
+        }
+        insertDeltas(deltas);
+    }
+
+    /**
+     * Các đơn vừa chuyển sang DELIVERED.
+     */
+    public void ordersDelivered(Collection<Long> orderIds) {
+        insertDeltas(loadOrderLines(orderIds, SalesRollupKindEnum.DELIVERED, 1));
+    }
+
+    // Dòng (order, product) của các đơn, mỗi dòng gán kind / sign
+    private List<Delta> loadOrderLines(Collection<Long> orderIds, SalesRollupKindEnum kind, int sign) {
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+        String sql = "SELECT o.id, o.created_at, o.status, oi.product_id, COALESCE(p.category_id, 0) AS category_id, "
+                + "SUM(oi.quantity) AS units, SUM(oi.quantity * oi.price_at_purchase) AS revenue "
+                + "FROM orders o JOIN order_items oi ON oi.order_id = o.id "
+                + "LEFT JOIN products p ON p.id = oi.product_id "
+                + "WHERE o.id IN (:ids) "
+                + "GROUP BY o.id, o.created_at, o.status, oi.product_id, p.category_id "
+                + "ORDER BY o.id, oi.product_id";
+        List<Delta> lines = new ArrayList<>();
+        Map<Long, Set<Long>> seenCategories = new HashMap<>();
+        namedJdbcTemplate.query(sql, Map.of("ids", orderIds), rs -> {
+            Delta line = readOrderLine(rs, seenCategories);
+            line.kind = kind;
+            line.sign = sign;
+            lines.add(line);
+        });
+        return lines;
+    }
+
+    private Delta readOrderLine(ResultSet rs, Map<Long, Set<Long>> seenCategories) throws SQLException {
+        Delta line = new Delta();
+        line.orderId = rs.getLong("id");
+        line.orderCreatedAt = rs.getTimestamp("created_at", Calendar.getInstance(UTC)).toInstant();
+        line.productId = rs.getLong("product_id");
+        line.categoryId = rs.getLong("category_id");
+        line.categoryFirst = seenCategories.computeIfAbsent(line.orderId, id -> new HashSet<>())
+                .add(line.categoryId) ? 1 : 0;
+        line.units = rs.getInt("units");
+        line.revenue = rs.getDouble("revenue");
+        return line;
+    }
+
+    private static Delta copy(Delta line) {
+        Delta delta = new Delta();
+        delta.orderId = line.orderId;
+        delta.orderCreatedAt = line.orderCreatedAt;
+        delta.productId = line.productId;
+        delta.categoryId = line.categoryId;
+        delta.kind = line.kind;
+        delta.sign = line.sign;
+        delta.categoryFirst = line.categoryFirst;
+        delta.units = line.units;
+        delta.revenue = line.revenue;
+        return delta;
+    }
+
+    private void insertDeltas(List<Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO sales_rollup_deltas "
+                + "(order_id, order_created_at, product_id, category_id, kind, sign, category_first, units, revenue) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                deltas, deltas.size(), (ps, d) -> {
+                    ps.setLong(1, d.orderId);
+                    ps.setTimestamp(2, Timestamp.from(d.orderCreatedAt), Calendar.getInstance(UTC));
+                    ps.setLong(3, d.productId);
+                    ps.setLong(4, d.categoryId);
+                    ps.setString(5, d.kind.name());
+                    ps.setInt(6, d.sign);
+                    ps.setInt(7, d.categoryFirst);
+                    ps.setInt(8, d.units);
+                    ps.setDouble(9, d.revenue);
+                });
+    }
+
+    // ===== Fold delta → rollup =====
+
+    /**
+     * Gom delta vào rollup, mỗi lần tối đa fold-batch-size dòng / transaction.
+     */
+    @Scheduled(fixedDelayString = "${app.reports.rollup.fold-interval-ms:5000}")
+    public void fold() {
+        // Giới hạn số vòng để không chiếm scheduler quá lâu khi backlog lớn
+        for (int round = 0; round < 20; round++) {
+            Integer folded = transactionTemplate.execute(status -> foldBatch());
+            if (folded == null || folded < foldBatchSize) {
+                return;
+            }
+        }
+    }
+
+    private int foldBatch() {
+        List<Delta> deltas = jdbcTemplate.query(
+                "SELECT " + DELTA_COLUMNS + " FROM sales_rollup_deltas ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                (rs, rowNum) -> {
+                    Delta delta = new Delta();
+                    delta.id = rs.getLong("id");
+                    delta.orderId = rs.getLong("order_id");
+                    delta.orderCreatedAt = rs.getTimestamp("order_created_at", Calendar.getInstance(UTC)).toInstant();
+                    delta.productId = rs.getLong("product_id");
+                    delta.categoryId = rs.getLong("category_id");
+                    delta.kind = SalesRollupKindEnum.valueOf(rs.getString("kind"));
+                    delta.sign = rs.getInt("sign");
+                    delta.categoryFirst = rs.getInt("category_first");
+                    delta.units = rs.getInt("units");
+                    delta.revenue = rs.getDouble("revenue");
+                    return delta;
+                }, foldBatchSize);
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        apply(deltas);
+        List<Long> ids = deltas.stream().map(d -> d.id).toList();
+        namedJdbcTemplate.update("DELETE FROM sales_rollup_deltas WHERE id IN (:ids)", Map.of("ids", ids));
+        return deltas.size();
+    }
+
+    // Cộng các delta vào rollup giờ + ngày, cả 2 dimension
+    private void apply(List<Delta> deltas) {
+        Map<Key, Totals> hourly = new HashMap<>();
+        Map<Key, Totals> daily = new HashMap<>();
+        for (Delta d : deltas) {
+            Instant hour = d.orderCreatedAt.truncatedTo(ChronoUnit.HOURS);
+            LocalDate day = LocalDate.ofInstant(d.orderCreatedAt, zone);
+            add(hourly.computeIfAbsent(new Key(hour, SalesDimensionEnum.PRODUCT, d.productId), k -> new Totals()), d, 1);
+            add(hourly.computeIfAbsent(new Key(hour, SalesDimensionEnum.CATEGORY, d.categoryId), k -> new Totals()), d,
+                    d.categoryFirst);
+            add(daily.computeIfAbsent(new Key(day, SalesDimensionEnum.PRODUCT, d.productId), k -> new Totals()), d, 1);
+            add(daily.computeIfAbsent(new Key(day, SalesDimensionEnum.CATEGORY, d.categoryId), k -> new Totals()), d,
+                    d.categoryFirst);
+        }
+        upsert("sales_rollup_hourly", "bucket_start", hourly);
+        upsert("sales_rollup_daily", "bucket_date", daily);
+    }
+
+    private static void add(Totals totals, Delta d, int orders) {
+        int k = d.kind.ordinal();
+        totals.orders[k] += (long) d.sign * orders;
+        totals.units[k] += (long) d.sign * d.units;
+        totals.revenue[k] += d.sign * d.revenue;
+    }
+
+    private void upsert(String table, String bucketColumn, Map<Key, Totals> rows) {
+        // Ghi theo thứ tự khóa chính để các instance lock row rollup cùng thứ tự
+        List<Map.Entry<Key, Totals>> entries = new ArrayList<>(rows.entrySet());
+        entries.sort(Comparator.<Map.Entry<Key, Totals>, String>comparing(e -> e.getKey().bucket.toString())
+                .thenComparing(e -> e.getKey().dimension)
+                .thenComparingLong(e -> e.getKey().dimensionId));
+
+        String sql = "INSERT INTO " + table + " (" + bucketColumn + ", dimension, dimension_id, "
+                + "placed_orders, placed_units, placed_revenue, "
+                + "cancelled_orders, cancelled_units, cancelled_revenue, "
+                + "delivered_orders, delivered_units, delivered_revenue) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE "
+                + "placed_orders = placed_orders + VALUES(placed_orders), "
+                + "placed_units = placed_units + VALUES(placed_units), "
+                + "placed_revenue = placed_revenue + VALUES(placed_revenue), "
+                + "cancelled_orders = cancelled_orders + VALUES(cancelled_orders), "
+                + "cancelled_units = cancelled_units + VALUES(cancelled_units), "
+                + "cancelled_revenue = cancelled_revenue + VALUES(cancelled_revenue), "
+                + "delivered_orders = delivered_orders + VALUES(delivered_orders), "
+                + "delivered_units = delivered_units + VALUES(delivered_units), "
+                + "delivered_revenue = delivered_revenue + VALUES(delivered_revenue)";
+        jdbcTemplate.batchUpdate(sql, entries, entries.size(), (ps, e) -> {
+            bindBucket(ps, e.getKey().bucket);
+            ps.setString(2, e.getKey().dimension.name());
+            ps.setLong(3, e.getKey().dimensionId);
+            int i = 4;
+            for (SalesRollupKindEnum kind : SalesRollupKindEnum.values()) {
+                ps.setLong(i++, e.getValue().orders[kind.ordinal()]);
+                ps.setLong(i++, e.getValue().units[kind.ordinal()]);
+                ps.setDouble(i++, e.getValue().revenue[kind.ordinal()]);
+            }
+        });
+    }
+
+    private static void bindBucket(PreparedStatement ps, Comparable<?> bucket) throws SQLException {
+        if (bucket instanceof Instant hour) {
+            ps.setTimestamp(1, Timestamp.from(hour), Calendar.getInstance(UTC));
+        } else {
+            ps.setDate(1, Date.valueOf((LocalDate) bucket));
+        }
+    }
+
+    // ===== Rebuild =====
+
+    /**
+     * Tính lại rollup của [from, to] (ngày theo app.reports.zone) từ orders.
+     * Mỗi ngày 1 transaction, tối đa rebuild-parallelism ngày song song
+     * (mỗi ngày giữ 1 connection). Ngày lỗi được trả về trong failedDays.
+     *
+     * Khi rebuild, delta của các đơn trong ngày bị xóa (đã nằm trong kết quả tính lại);
+     * đơn mới của ngày đang rebuild chờ tới khi ngày đó commit xong.
+     */
+    public SalesRollupRebuildDTO rebuild(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IdInvalidException("Khoảng ngày không hợp lệ");
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days > rebuildMaxDays) {
+            throw new IdInvalidException("Tối đa " + rebuildMaxDays + " ngày mỗi lần rebuild");
+        }
+
+        List<LocalDate> dates = from.datesUntil(to.plusDays(1)).toList();
+        List<Future<Long>> results = new ArrayList<>();
+        List<LocalDate> failedDays = new ArrayList<>();
+        long orders = 0;
+        try (ExecutorService pool = Executors.newFixedThreadPool(rebuildParallelism,
+                Thread.ofVirtual().name("rollup-rebuild-", 0).factory())) {
+            for (LocalDate date : dates) {
+                results.add(pool.submit(() -> transactionTemplate.execute(status -> rebuildDay(date))));
+            }
+            for (int i = 0; i < dates.size(); i++) {
+                try {
+                    orders += results.get(i).get();
+                } catch (Exception e) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    failedDays.add(dates.get(i));
+                }
+            }
+        }
+
+        SalesRollupRebuildDTO result = new SalesRollupRebuildDTO();
+        result.setFrom(from);
+        result.setTo(to);
+        result.setDays(dates.size());
+        result.setOrders(orders);
+        result.setFailedDays(failedDays);
+        return result;
+    }
+
+    /**
+     * Tự rebuild ngày hôm qua (sửa lệch nếu có). Tắt khi cron = "-".
+     */
+    @Scheduled(cron = "${app.reports.rollup.rebuild-cron:-}", zone = "${app.reports.zone:Asia/Ho_Chi_Minh}")
+    public void rebuildYesterday() {
+        LocalDate yesterday = LocalDate.now(zone).minusDays(1);
+        rebuild(yesterday, yesterday);
+    }
+
+    // @return số đơn của ngày
+    private long rebuildDay(LocalDate date) {
+        Timestamp start = Timestamp.from(date.atStartOfDay(zone).toInstant());
+        Timestamp end = Timestamp.from(date.plusDays(1).atStartOfDay(zone).toInstant());
+
+        // 1. Xóa delta của ngày trước (lock range → đơn mới của ngày chờ transaction này)
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "DELETE FROM sales_rollup_deltas WHERE order_created_at >= ? AND order_created_at < ?");
+            ps.setTimestamp(1, start, Calendar.getInstance(UTC));
+            ps.setTimestamp(2, end, Calendar.getInstance(UTC));
+            return ps;
+        });
+
+        // 2. Xóa rollup cũ của ngày
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "DELETE FROM sales_rollup_hourly WHERE bucket_start >= ? AND bucket_start < ?");
+            ps.setTimestamp(1, start, Calendar.getInstance(UTC));
+            ps.setTimestamp(2, end, Calendar.getInstance(UTC));
+            return ps;
+        });
+        jdbcTemplate.update("DELETE FROM sales_rollup_daily WHERE bucket_date = ?", Date.valueOf(date));
+
+        // 3. Đọc lại các đơn tạo trong ngày ở bảng nóng + archive (dùng index created_at), mỗi đơn:
+        //    PLACED luôn; CANCELLED / DELIVERED theo status hiện tại
+        List<Delta> deltas = new ArrayList<>();
+        Map<Long, Set<Long>> seenCategories = new HashMap<>();
+        for (String[] tables : ORDER_TABLES) {
+            String sql = "SELECT o.id, o.created_at, o.status, oi.product_id, COALESCE(p.category_id, 0) AS category_id, "
+                    + "SUM(oi.quantity) AS units, SUM(oi.quantity * oi.price_at_purchase) AS revenue "
+                    + "FROM " + tables[0] + " o JOIN " + tables[1] + " oi ON oi.order_id = o.id "
+                    + "LEFT JOIN products p ON p.id = oi.product_id "
+                    + "WHERE o.created_at >= ? AND o.created_at < ? "
+                    + "GROUP BY o.id, o.created_at, o.status, oi.product_id, p.category_id "
+                    + "ORDER BY o.id, oi.product_id";
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setTimestamp(1, start, Calendar.getInstance(UTC));
+                ps.setTimestamp(2, end, Calendar.getInstance(UTC));
+                return ps;
+            }, rs -> {
+                Delta placed = readOrderLine(rs, seenCategories);
+                placed.kind = SalesRollupKindEnum.PLACED;
+                placed.sign = 1;
+                deltas.add(placed);
+
+                String status = rs.getString("status");
+                if (StatusEnum.CANCELLED.name().equals(status) || StatusEnum.DELIVERED.name().equals(status)) {
+                    Delta current = copy(placed);
+                    current.kind = SalesRollupKindEnum.valueOf(status);
+                    deltas.add(current);
+                }
+            });
+        }
+
+        // 4. Ghi rollup mới
+        apply(deltas);
+        return seenCategories.size();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.AR_BE.service;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lease trong bảng scheduler_leases cho job @Scheduled chỉ được chạy trên 1 instance.
+ * Instance giữ lease tới lease_until; chết giữa chừng thì instance khác lấy được
+ * sau khi hết hạn. Giờ so theo UTC_TIMESTAMP của database, không theo đồng hồ app.
+ */
+@Service
+@RequiredArgsConstructor
+public class SchedulerLease {
+
+    private final JdbcTemplate jdbcTemplate;
+    // Chủ lease của instance này
+    private final String owner = UUID.randomUUID().toString();
+
+    /**
+     * Giữ (hoặc gia hạn nếu đang giữ) lease name trong ttl.
+     *
+     * @return false nếu instance khác đang giữ và chưa hết hạn
+     */
+    public boolean tryAcquire(String name, Duration ttl) {
+        long seconds = Math.max(1, ttl.toSeconds());
+        int created = jdbcTemplate.update("INSERT IGNORE INTO scheduler_leases (name, owner, lease_until)"
+                + " VALUES (?, ?, UTC_TIMESTAMP(6) + INTERVAL ? SECOND)", name, owner, seconds);
+        if (created == 1) {
+            return true;
+        }
+        return jdbcTemplate.update("UPDATE scheduler_leases"
+                + " SET owner = ?, lease_until = UTC_TIMESTAMP(6) + INTERVAL ? SECOND"
+                + " WHERE name = ? AND (owner = ? OR lease_until < UTC_TIMESTAMP(6))",
+                owner, seconds, name, owner) == 1;
+    }
+
+    /**
+     * Trả lease (chỉ khi instance này đang giữ) để lần chạy sau instance nào cũng lấy được ngay.
+     */
+    public void release(String name) {
+        jdbcTemplate.update("UPDATE scheduler_leases SET lease_until = UTC_TIMESTAMP(6)"
+                + " WHERE name = ? AND owner = ?", name, owner);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.AR_BE.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.AR_BE.domain.User;
+import com.example.AR_BE.domain.response.RestLoginDTOResponse;
+import com.example.AR_BE.repository.UserRepository;
+import com.example.AR_BE.utils.CurrentUser;
+import com.example.AR_BE.utils.SecurityUtils;
+
+/**
+ * Thông tin user theo email cho các chỗ vẫn cần hơn id / role của token
+ * (account, token cũ chưa có role).
+ *
+ * LRU có giới hạn + TTL. UserService / RoleService / PermissionService gọi
+ * invalidate khi sửa user, role hoặc permission.
+ */
+@Service
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readTransaction;
+    private final Map<String, Entry> entries;
+
+    @Value("${app.user-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    public UserCache(UserRepository userRepository, PlatformTransactionManager transactionManager,
+            @Value("${app.user-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static final class Entry {
+        private final RestLoginDTOResponse.UserLogin user;
+        private final long expiresAt;
+
+        private Entry(RestLoginDTOResponse.UserLogin user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * User hiện tại: lấy từ token, token chưa có role thì lấy qua cache.
+     */
+    public CurrentUser currentUser() {
+        CurrentUser fromToken = SecurityUtils.getCurrentUser().orElse(null);
+        if (fromToken != null && fromToken.getRole() != null) {
+            return fromToken;
+        }
+        String email = SecurityUtils.getCurrentUserLogin()
+                .orElseThrow(() -> new RuntimeException("User not logged in"));
+        RestLoginDTOResponse.UserLogin user = getAccount(email);
+        return new CurrentUser(user.getId(), user.getEmail(), user.getName(),
+                user.getRole() != null ? user.getRole().getName() : null);
+    }
+
+    /**
+     * Account theo email (role + permissions đã load sẵn để serialize ngoài session).
+     */
+    public RestLoginDTOResponse.UserLogin getAccount(String email) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(email);
+            if (entry != null && entry.expiresAt > now) {
+                return entry.user;
+            }
+        }
+
+        RestLoginDTOResponse.UserLogin user = readTransaction.execute(status -> {
+            User userDB = userRepository.findByEmail(email);
+            if (userDB == null) {
+                return null;
+            }
+            if (userDB.getRole() != null) {
+                Hibernate.initialize(userDB.getRole().getPermissions());
+            }
+            return new RestLoginDTOResponse.UserLogin(userDB.getId(), userDB.getEmail(),
+                    userDB.getName(), userDB.getRole(), userDB.getPhoneNumber());
+        });
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+
+        synchronized (entries) {
+            entries.put(email, new Entry(user, now + ttlSeconds * 1000));
+        }
+        return user;
+    }
+
+    public void invalidateById(long userId) {
+        evict(() -> {
+            synchronized (entries) {
+                entries.values().removeIf(e -> e.user.getId() == userId);
+            }
+        });
+    }
+
+    // Role / permission đổi → mọi account đã cache có thể sai
+    public void invalidateAll() {
+        evict(() -> {
+            synchronized (entries) {
+                entries.clear();
+            }
+        });
+    }
+
+    // Xóa ngay và xóa lại sau commit (request khác có thể vừa nạp bản cũ)
+    private void evict(Runnable evict) {
+        evict.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        }
+    }
+}
@@ -2,8 +2,9 @@ package com.example.AR_BE.service;
 
 import com.example.AR_BE.domain.request.UpdatePasswordDTORequest;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -17,6 +18,9 @@ import com.example.AR_BE.domain.response.UpdateUserDTOResponse;
 import com.example.AR_BE.domain.response.UserListDTOResponse;
 import com.example.AR_BE.repository.RoleRepository;
 import com.example.AR_BE.repository.UserRepository;
+import com.example.AR_BE.utils.pagination.CountCache;
+import com.example.AR_BE.utils.pagination.Keyset;
+import com.example.AR_BE.utils.pagination.SliceQuery;
 
 import java.util.List;
 import java.util.Optional;
@@ -28,13 +32,20 @@ public class UserService {
     private final RoleService roleService;
     private final PasswordEncoder passwordEncoder;
     private final RoleRepository roleRepository;
+    private final SliceQuery sliceQuery;
+    private final CountCache countCache;
+    private final UserCache userCache;
 
     public UserService(UserRepository userRepository, RoleService roleService, 
-                      PasswordEncoder passwordEncoder, RoleRepository roleRepository) {
+                      PasswordEncoder passwordEncoder, RoleRepository roleRepository,
+                      SliceQuery sliceQuery, CountCache countCache, UserCache userCache) {
         this.userRepository = userRepository;
         this.roleService = roleService;
         this.passwordEncoder = passwordEncoder;
         this.roleRepository = roleRepository;
+        this.sliceQuery = sliceQuery;
+        this.countCache = countCache;
+        this.userCache = userCache;
 
     }
 
@@ -47,6 +58,7 @@ public class UserService {
                 user.setRole(null);
             }
         }
+        this.countCache.invalidate(CountCache.USERS);
         return userRepository.save(user);
     }
 
@@ -59,6 +71,7 @@ public class UserService {
         // Gán role USER cho user
         user.setRole(userRole);
         
+        this.countCache.invalidate(CountCache.USERS);
         return userRepository.save(user);
     }
 
@@ -100,6 +113,8 @@ public class UserService {
 
     public void handleDeleteUser(long id) {
         this.userRepository.deleteById(id);
+        this.userCache.invalidateById(id);
+        this.countCache.invalidate(CountCache.USERS);
     }
 
     public User handleGetUser(long id) {
@@ -141,19 +156,27 @@ public class UserService {
                 currentUser.setRole(null);
             }
             currentUser = this.userRepository.save(currentUser);
+            this.userCache.invalidateById(currentUser.getId());
+            this.countCache.invalidate(CountCache.USERS);
         }
         return currentUser;
     }
 
-    public ResultPaginationDTO handleGetAllUsers(Specification<User> specification, Pageable pageable) {
-        Page<User> pageUser = this.userRepository.findAll(specification, pageable);
+    public ResultPaginationDTO handleGetAllUsers(Specification<User> specification, String filter,
+            Pageable pageable, boolean withTotal) {
+        Slice<User> pageUser = this.sliceQuery.find(User.class, specification, pageable);
         ResultPaginationDTO rs = new ResultPaginationDTO();
         ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
 
         meta.setPage(pageable.getPageNumber() + 1);
         meta.setPageSize(pageable.getPageSize());
-        meta.setPages(pageUser.getTotalPages());
-        meta.setTotal(pageUser.getTotalElements());
+        meta.setHasNext(pageUser.hasNext());
+        if (withTotal) {
+            long total = this.countCache.count(CountCache.USERS, filter,
+                    () -> this.userRepository.count(specification));
+            meta.setTotal(total);
+            meta.setPages((int) Math.ceil((double) total / pageable.getPageSize()));
+        }
 
         rs.setMeta(meta);
 
@@ -165,6 +188,23 @@ public class UserService {
         return rs;
     }
 
+    // Chế độ cursor: seek theo id, không COUNT / LIMIT offset
+    public ResultPaginationDTO handleGetAllUsersByCursor(Specification<User> specification, String cursor, int size) {
+        Keyset.Page<User> pageUser = Keyset.fetch(this.userRepository, specification, "id",
+                Sort.Direction.ASC, cursor, size, null, User::getId);
+        ResultPaginationDTO rs = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
+
+        meta.setPageSize(size);
+        meta.setNextCursor(pageUser.getNextCursor());
+
+        rs.setMeta(meta);
+        rs.setResult(pageUser.getContent().stream()
+            .map(this::convertToUserListDTO)
+            .collect(Collectors.toList()));
+        return rs;
+    }
+
     public UserListDTOResponse convertToUserListDTO(User user) {
         UserListDTOResponse dto = new UserListDTOResponse();
         dto.setId(user.getId());
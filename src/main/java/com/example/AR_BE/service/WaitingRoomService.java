@@ -0,0 +1,345 @@
+package com.example.AR_BE.service;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.AR_BE.domain.dto.AdmissionDTO;
+import com.example.AR_BE.utils.constants.AdmissionStatusEnum;
+import com.example.AR_BE.utils.exception.IdInvalidException;
+import com.example.AR_BE.utils.exception.TooManyRequestsException;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Phòng chờ trước POST /orders/create khi flash sale.
+ *
+ * - Token bucket app.orders.waiting-room.rate lượt/giây (burst = burst): lúc vắng
+ *   request đi thẳng, lúc đông client vào hàng (POST /orders/waiting-room), poll
+ *   vị trí + ETA, tới lượt thì gọi create kèm header X-Admission-Token.
+ * - Hàng đầy / không có lượt → 429 + Retry-After, không đụng database.
+ * - Số checkout chạy cùng lúc ≤ max-in-flight (< số connection Hikari) để các
+ *   API xem sản phẩm vẫn còn connection.
+ * - adaptive=true: rate giảm khi có thread chờ connection Hikari, tăng dần khi pool rảnh.
+ *
+ * Trạng thái nằm trong RAM của từng instance (token chỉ dùng được ở instance đã cấp).
+ */
+@Service
+public class WaitingRoomService {
+
+    /**
+     * Lượt checkout đang chạy, đóng (try-with-resources) để trả lượt.
+     */
+    public interface Admission extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Admission NOT_LIMITED = () -> {
+    };
+
+    private static final class Entry {
+        private final String token = UUID.randomUUID().toString();
+        private final long userId;
+        private final long seq;
+        private volatile AdmissionStatusEnum status = AdmissionStatusEnum.WAITING;
+        private volatile Instant admittedUntil;
+        // Lần cuối client poll; bỏ poll quá waiting-ttl → coi như rời hàng
+        private volatile long lastSeenMillis = System.currentTimeMillis();
+
+        private Entry(long userId, long seq) {
+            this.userId = userId;
+            this.seq = seq;
+        }
+    }
+
+    private final UserCache userCache;
+    private final HikariPoolMXBean pool;
+    private final boolean enabled;
+    private final Semaphore inFlight;
+
+    private final Queue<Entry> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // userId -> entry đang chờ / đã được vào (mỗi user 1 chỗ trong hàng)
+    private final Map<Long, Entry> entriesByUser = new ConcurrentHashMap<>();
+    private final AtomicLong nextSeq = new AtomicLong();
+    // seq của entry kế tiếp được vào (tính vị trí)
+    private volatile long headSeq;
+
+    private final Object bucketLock = new Object();
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private volatile double rate;
+
+    private final Counter admittedCounter;
+    private final Counter rejectedCounter;
+
+    @Value("${app.orders.waiting-room.burst:100}")
+    private double burst;
+
+    @Value("${app.orders.waiting-room.max-waiting:50000}")
+    private int maxWaiting;
+
+    @Value("${app.orders.waiting-room.admitted-ttl-seconds:120}")
+    private long admittedTtlSeconds;
+
+    @Value("${app.orders.waiting-room.waiting-ttl-seconds:60}")
+    private long waitingTtlSeconds;
+
+    @Value("${app.orders.waiting-room.adaptive:true}")
+    private boolean adaptive;
+
+    @Value("${app.orders.waiting-room.min-rate:5}")
+    private double minRate;
+
+    @Value("${app.orders.waiting-room.max-rate:200}")
+    private double maxRate;
+
+    public WaitingRoomService(UserCache userCache, DataSource dataSource, MeterRegistry meterRegistry,
+            @Value("${app.orders.waiting-room.enabled:false}") boolean enabled,
+            @Value("${app.orders.waiting-room.rate:50}") double rate,
+            @Value("${app.orders.waiting-room.max-in-flight:10}") int maxInFlight) {
+        this.userCache = userCache;
+        this.pool = hikariPool(dataSource);
+        this.enabled = enabled;
+        this.rate = rate;
+        this.inFlight = new Semaphore(maxInFlight);
+
+        meterRegistry.gauge("orders.waiting-room.depth", waitingCount);
+        meterRegistry.gauge("orders.waiting-room.rate", this, s -> s.rate);
+        meterRegistry.gauge("orders.waiting-room.in-flight", inFlight, s -> maxInFlight - s.availablePermits());
+        this.admittedCounter = meterRegistry.counter("orders.waiting-room.admitted");
+        this.rejectedCounter = meterRegistry.counter("orders.waiting-room.rejected");
+    }
+
+    private static HikariPoolMXBean hikariPool(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class)
+                    ? dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean()
+                    : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Vào hàng (user đã có chỗ → trả lại chỗ cũ). Hàng trống và còn lượt → vào ngay.
+     */
+    public AdmissionDTO join() {
+        long userId = userCache.currentUser().getId();
+        Entry existing = entriesByUser.get(userId);
+        if (existing != null && existing.status != AdmissionStatusEnum.EXPIRED) {
+            existing.lastSeenMillis = System.currentTimeMillis();
+            return toDTO(existing);
+        }
+
+        // 1. Hàng đầy → 429 ngay
+        if (waitingCount.get() >= maxWaiting) {
+            rejectedCounter.increment();
+            throw new TooManyRequestsException("Hàng chờ đã đầy, vui lòng thử lại sau",
+                    retryAfterSeconds(maxWaiting));
+        }
+
+        // 2. Không ai chờ + còn lượt → vào ngay, ngược lại xếp cuối hàng
+        Entry entry = new Entry(userId, nextSeq.getAndIncrement());
+        entries.put(entry.token, entry);
+        entriesByUser.put(userId, entry);
+        if (!enabled || (waitingCount.get() == 0 && tryTakeToken())) {
+            admit(entry);
+        } else {
+            waitingCount.incrementAndGet();
+            waiting.add(entry);
+        }
+        return toDTO(entry);
+    }
+
+    /**
+     * Vị trí / trạng thái của token (đồng thời báo client vẫn đang chờ).
+     */
+    public AdmissionDTO getStatus(String token) {
+        Entry entry = ownEntry(token);
+        entry.lastSeenMillis = System.currentTimeMillis();
+        return toDTO(entry);
+    }
+
+    /**
+     * Gọi đầu POST /orders/create, trước mọi truy cập database.
+     * Token đã tới lượt → dùng (1 lần); không token → chỉ qua khi không ai chờ và còn lượt.
+     */
+    public Admission enter(String token) {
+        if (!enabled) {
+            return NOT_LIMITED;
+        }
+
+        // 1. Giới hạn checkout chạy cùng lúc
+        if (!inFlight.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new TooManyRequestsException("Hệ thống đang đông, vui lòng thử lại", 1L);
+        }
+        try {
+            // 2. Có token: phải là token ADMITTED còn hạn của chính user
+            if (token != null && !token.isBlank()) {
+                Entry entry = ownEntry(token);
+                if (entry.status == AdmissionStatusEnum.WAITING) {
+                    AdmissionDTO dto = toDTO(entry);
+                    throw new TooManyRequestsException("Chưa tới lượt, vị trí " + dto.getPosition(),
+                            Math.max(1, dto.getEtaSeconds()));
+                }
+                if (entry.status != AdmissionStatusEnum.ADMITTED || entry.admittedUntil.isBefore(Instant.now())) {
+                    throw new IdInvalidException("Lượt đặt hàng đã hết hạn, vui lòng vào hàng lại");
+                }
+                // Claim token nguyên tử: 2 request cùng token chỉ 1 request được đi
+                if (!remove(entry)) {
+                    throw new IdInvalidException("Admission token đã được sử dụng");
+                }
+                return inFlight::release;
+            }
+
+            // 3. Không token: đi thẳng khi không ai chờ, ngược lại phải vào hàng
+            if (waitingCount.get() == 0 && tryTakeToken()) {
+                admittedCounter.increment();
+                return inFlight::release;
+            }
+            rejectedCounter.increment();
+            throw new TooManyRequestsException(
+                    "Hệ thống đang đông, vui lòng vào hàng chờ (POST /api/v1/orders/waiting-room)",
+                    retryAfterSeconds(waitingCount.get() + 1));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Cho các entry đầu hàng vào theo số lượt trong bucket.
+     */
+    @Scheduled(fixedDelayString = "${app.orders.waiting-room.admit-interval-ms:100}")
+    public void admitWaiting() {
+        if (!enabled) {
+            return;
+        }
+        long abandonedBefore = System.currentTimeMillis() - waitingTtlSeconds * 1000;
+        Entry entry;
+        while ((entry = waiting.peek()) != null) {
+            // Client bỏ đi không tốn lượt
+            if (entry.lastSeenMillis < abandonedBefore) {
+                waiting.poll();
+                waitingCount.decrementAndGet();
+                entry.status = AdmissionStatusEnum.EXPIRED;
+                remove(entry);
+                continue;
+            }
+            if (!tryTakeToken()) {
+                break;
+            }
+            waiting.poll();
+            waitingCount.decrementAndGet();
+            admit(entry);
+        }
+        Entry head = waiting.peek();
+        headSeq = head != null ? head.seq : nextSeq.get();
+    }
+
+    /**
+     * Dọn token ADMITTED quá hạn chưa dùng.
+     */
+    @Scheduled(fixedDelayString = "${app.orders.waiting-room.cleanup-interval-ms:5000}")
+    public void cleanup() {
+        Instant now = Instant.now();
+        for (Entry entry : entries.values()) {
+            if (entry.status == AdmissionStatusEnum.ADMITTED && entry.admittedUntil.isBefore(now)) {
+                entry.status = AdmissionStatusEnum.EXPIRED;
+                remove(entry);
+            }
+        }
+    }
+
+    /**
+     * adaptive: có thread chờ connection → giảm rate 30%, pool còn rảnh → tăng dần.
+     */
+    @Scheduled(fixedDelayString = "${app.orders.waiting-room.adapt-interval-ms:1000}")
+    public void adaptRate() {
+        if (!enabled || !adaptive || pool == null) {
+            return;
+        }
+        int awaiting = pool.getThreadsAwaitingConnection();
+        int active = pool.getActiveConnections();
+        int total = pool.getTotalConnections();
+        if (awaiting > 0) {
+            rate = Math.max(minRate, rate * 0.7);
+        } else if (active < total * 0.75) {
+            rate = Math.min(maxRate, rate + Math.max(1, rate * 0.05));
+        }
+    }
+
+    private void admit(Entry entry) {
+        entry.admittedUntil = Instant.now().plusSeconds(admittedTtlSeconds);
+        entry.status = AdmissionStatusEnum.ADMITTED;
+        admittedCounter.increment();
+    }
+
+    // @return false nếu entry đã bị request / job khác gỡ trước
+    private boolean remove(Entry entry) {
+        if (!entries.remove(entry.token, entry)) {
+            return false;
+        }
+        entriesByUser.remove(entry.userId, entry);
+        return true;
+    }
+
+    private Entry ownEntry(String token) {
+        Entry entry = entries.get(token);
+        if (entry == null || entry.userId != userCache.currentUser().getId()) {
+            throw new IdInvalidException("Admission token không hợp lệ hoặc đã hết hạn");
+        }
+        return entry;
+    }
+
+    private boolean tryTakeToken() {
+        synchronized (bucketLock) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * rate);
+            lastRefillNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    private long retryAfterSeconds(long position) {
+        return Math.max(1, (long) Math.ceil(position / rate));
+    }
+
+    private AdmissionDTO toDTO(Entry entry) {
+        AdmissionDTO dto = new AdmissionDTO();
+        dto.setToken(entry.token);
+        dto.setStatus(entry.status.name());
+        if (entry.status == AdmissionStatusEnum.WAITING) {
+            long position = Math.max(1, entry.seq - headSeq + 1);
+            dto.setPosition(position);
+            dto.setEtaSeconds((long) Math.ceil(position / rate));
+        } else if (entry.status == AdmissionStatusEnum.ADMITTED) {
+            dto.setAdmittedUntil(entry.admittedUntil);
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.AR_BE.service.inventory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.AR_BE.repository.ProductRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Engine mặc định: stock nằm trực tiếp trong products.quantity,
+ * trừ/cộng bằng UPDATE có điều kiện. Product hot thì trừ/cộng trên
+ * product_stock_shards (xem StockShardService).
+ */
+@Component
+@ConditionalOnProperty(name = "app.inventory.engine", havingValue = "database", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DatabaseInventoryEngine implements InventoryEngine {
+
+    private final ProductRepository productRepo;
+    private final StockShardService stockShardService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean locksProductRows() {
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public void reserve(Map<Long, Integer> quantities) {
+        // UPDATE theo thứ tự id, cùng thứ tự lock với findAllByIdInForUpdate
+        for (Long productId : new TreeSet<>(quantities.keySet())) {
+            int quantity = quantities.get(productId);
+            // Danh sách hot có thể chưa refresh (node khác vừa enable / disable shard)
+            // -> thử nơi còn lại trước khi báo hết hàng
+            boolean taken = stockShardService.isHot(productId)
+                    ? stockShardService.tryTake(productId, quantity)
+                            || productRepo.decrementStock(productId, quantity) == 1
+                    : productRepo.decrementStock(productId, quantity) == 1
+                            || stockShardService.tryTake(productId, quantity);
+            if (!taken) {
+                throw new RuntimeException("Not enough stock for product " + productId);
+            }
+        }
+    }
+
+    @Override
+    @Transactional
+    public void release(Map<Long, Integer> quantities) {
+        // Product hot cộng vào shard, còn lại gộp thành 1 câu UPDATE
+        Map<Long, Integer> cold = new TreeMap<>();
+        for (Long productId : new TreeSet<>(quantities.keySet())) {
+            int quantity = quantities.get(productId);
+            if (!stockShardService.give(productId, quantity)) {
+                cold.put(productId, quantity);
+            }
+        }
+        if (cold.size() == 1) {
+            Map.Entry<Long, Integer> only = cold.entrySet().iterator().next();
+            productRepo.incrementStock(only.getKey(), only.getValue());
+        } else if (!cold.isEmpty()) {
+            // UPDATE products SET quantity = quantity + CASE id WHEN ? THEN ? ... END WHERE id IN (...)
+            StringBuilder sql = new StringBuilder("UPDATE products SET quantity = quantity + CASE id");
+            List<Object> args = new ArrayList<>();
+            for (Map.Entry<Long, Integer> entry : cold.entrySet()) {
+                sql.append(" WHEN ? THEN ?");
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            sql.append(" END WHERE id IN (").append(String.join(", ", Collections.nCopies(cold.size(), "?")))
+                    .append(")");
+            args.addAll(cold.keySet());
+            jdbcTemplate.update(sql.toString(), args.toArray());
+        }
+    }
+
+    @Override
+    public Map<Long, Integer> available(Map<Long, Integer> quantities, Collection<Long> hotIds) {
+        Map<Long, Integer> shardTotals = stockShardService.sumByProductIds(hotIds);
+
+        Map<Long, Integer> result = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            result.put(entry.getKey(), entry.getValue() + shardTotals.getOrDefault(entry.getKey(), 0));
+        }
+        return result;
+    }
+
+    @Override
+    public void overwrite(Long productId, int quantity) {
+        // products.quantity chính là stock, không cần làm gì thêm
+    }
+}
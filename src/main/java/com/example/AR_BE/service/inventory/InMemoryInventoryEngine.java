@@ -0,0 +1,274 @@
+package com.example.AR_BE.service.inventory;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+/**
+ * Engine cho flash sale: stock của mỗi product là một CAS counter trong RAM,
+ * nên checkout không phải chờ row lock của products.
+ *
+ * Mỗi thay đổi được chấp nhận sẽ ghi thêm 1 dòng delta vào stock_ledger
+ * (append-only, cùng transaction với order). Job nền gộp các delta theo product
+ * và cộng vào products.quantity theo batch, rồi xóa các dòng đã flush.
+ *
+ * Sau khi restart, counter được dựng lại lazily: products.quantity + SUM(shard)
+ * + SUM(delta chưa flush). Delta của product hot cũng flush vào products.quantity,
+ * tổng stock vẫn đúng vì luôn = products.quantity + SUM(shard).
+ * Chỉ dùng khi chạy 1 instance (counter không chia sẻ giữa các node).
+ */
+@Component
+@ConditionalOnProperty(name = "app.inventory.engine", havingValue = "memory")
+public class InMemoryInventoryEngine implements InventoryEngine {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate flushTransaction;
+    private final StockShardService stockShardService;
+    private final ConcurrentHashMap<Long, AtomicLong> available = new ConcurrentHashMap<>();
+
+    @Value("${app.inventory.memory.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    public InMemoryInventoryEngine(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+            PlatformTransactionManager transactionManager, StockShardService stockShardService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.stockShardService = stockShardService;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        // READ COMMITTED để SELECT ... FOR UPDATE không giữ gap lock chặn insert của checkout
+        this.flushTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Override
+    public boolean locksProductRows() {
+        return false;
+    }
+
+    @Override
+    public void reserve(Map<Long, Integer> quantities) {
+        // Giữ đúng instance counter đã trừ: overwrite có thể thay bằng counter nạp lại từ DB,
+        // trả vào counter mới sẽ cộng số hàng mà nó chưa từng bị trừ
+        Map<Long, AtomicLong> taken = new HashMap<>();
+        for (Long productId : new TreeSet<>(quantities.keySet())) {
+            AtomicLong counter = counter(productId);
+            if (!tryTake(counter, quantities.get(productId))) {
+                addToSame(taken, quantities, 1);
+                throw new RuntimeException("Not enough stock for product " + productId);
+            }
+            taken.put(productId, counter);
+        }
+
+        Runnable undo = () -> addToSame(taken, quantities, 1);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Đơn rollback -> trả lại counter
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        undo.run();
+                    }
+                }
+            });
+            appendLedger(quantities, -1);
+        } else {
+            try {
+                appendLedger(quantities, -1);
+            } catch (RuntimeException e) {
+                undo.run();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void release(Map<Long, Integer> quantities) {
+        appendLedger(quantities, 1);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addToLoaded(quantities, 1);
+            return;
+        }
+        // Chỉ mở bán lại khi đơn hủy chắc chắn commit, tránh bán số hàng có thể bị rollback
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private Map<Long, AtomicLong> applied;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                applied = addToLoaded(quantities, 1);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (applied != null && status != STATUS_COMMITTED) {
+                    addToSame(applied, quantities, -1);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Map<Long, Integer> available(Map<Long, Integer> quantities, Collection<Long> hotIds) {
+        List<Long> unloadedHotIds = hotIds.stream()
+                .filter(id -> !available.containsKey(id))
+                .toList();
+        Map<Long, Integer> shardTotals = stockShardService.sumByProductIds(unloadedHotIds);
+
+        Map<Long, Integer> result = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            AtomicLong counter = available.get(entry.getKey());
+            if (counter != null) {
+                result.put(entry.getKey(), (int) counter.get());
+            } else {
+                result.put(entry.getKey(), entry.getValue() + shardTotals.getOrDefault(entry.getKey(), 0));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void overwrite(Long productId, int quantity) {
+        // Quantity mới của admin thay thế mọi delta chưa flush
+        jdbcTemplate.update("DELETE FROM stock_ledger WHERE product_id = ?", productId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    available.remove(productId);
+                }
+            });
+        } else {
+            available.remove(productId);
+        }
+    }
+
+    /**
+     * Write-behind: gộp delta trong stock_ledger và cộng vào products.quantity.
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.memory.flush-interval-ms:200}")
+    public void flush() {
+        Integer flushed;
+        do {
+            flushed = flushTransaction.execute(status -> flushBatch());
+        } while (flushed != null && flushed >= flushBatchSize);
+    }
+
+    private int flushBatch() {
+        List<long[]> rows = jdbcTemplate.query(
+                "SELECT id, product_id, delta FROM stock_ledger ORDER BY id LIMIT ? FOR UPDATE",
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) },
+                flushBatchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        // TreeMap: update products theo thứ tự id
+        Map<Long, Long> deltas = new TreeMap<>();
+        List<Long> ledgerIds = new ArrayList<>(rows.size());
+        for (long[] row : rows) {
+            ledgerIds.add(row[0]);
+            deltas.merge(row[1], row[2], Long::sum);
+        }
+
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> {
+            if (delta != 0) {
+                updates.add(new Object[] { delta, productId });
+            }
+        });
+        jdbcTemplate.batchUpdate("UPDATE products SET quantity = quantity + ? WHERE id = ?", updates);
+        namedJdbcTemplate.update("DELETE FROM stock_ledger WHERE id IN (:ids)", Map.of("ids", ledgerIds));
+
+        return rows.size();
+    }
+
+    private AtomicLong counter(Long productId) {
+        AtomicLong counter = available.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        Long quantity = loadAvailable(productId);
+        if (quantity == null) {
+            throw new RuntimeException("Product not found");
+        }
+        AtomicLong existing = available.putIfAbsent(productId, new AtomicLong(quantity));
+        return existing != null ? existing : available.get(productId);
+    }
+
+    // Stock thật = products.quantity + shard (product hot) + các delta chưa flush
+    private Long loadAvailable(Long productId) {
+        List<Long> rows = jdbcTemplate.query(
+                "SELECT COALESCE(p.quantity, 0)"
+                        + " + COALESCE((SELECT SUM(s.quantity) FROM product_stock_shards s WHERE s.product_id = p.id), 0)"
+                        + " + COALESCE((SELECT SUM(l.delta) FROM stock_ledger l WHERE l.product_id = p.id), 0)"
+                        + " FROM products p WHERE p.id = ?",
+                (rs, rowNum) -> rs.getLong(1),
+                productId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private static boolean tryTake(AtomicLong counter, int quantity) {
+        while (true) {
+            long current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    // Cộng vào các counter đang nạp, trả về đúng các instance đã cộng (để hoàn tác)
+    private Map<Long, AtomicLong> addToLoaded(Map<Long, Integer> quantities, int sign) {
+        Map<Long, AtomicLong> touched = new HashMap<>();
+        quantities.forEach((productId, qty) -> {
+            AtomicLong counter = available.get(productId);
+            if (counter != null) {
+                counter.addAndGet((long) sign * qty);
+                touched.put(productId, counter);
+            }
+        });
+        return touched;
+    }
+
+    // Cộng vào đúng các instance counter cho trước; counter đã bị overwrite thay / xóa thì bỏ qua
+    // (counter nạp lại từ DB không chứa thay đổi cần hoàn tác)
+    private void addToSame(Map<Long, AtomicLong> counters, Map<Long, Integer> quantities, int sign) {
+        counters.forEach((productId, counter) -> available.computeIfPresent(productId, (id, current) -> {
+            if (current == counter) {
+                current.addAndGet((long) sign * quantities.get(productId));
+            }
+            return current;
+        }));
+    }
+
+    private void appendLedger(Map<Long, Integer> quantities, int sign) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, qty) -> rows.add(new Object[] { productId, sign * qty, now }));
+        jdbcTemplate.batchUpdate("INSERT INTO stock_ledger (product_id, delta, created_at) VALUES (?, ?, ?)", rows);
+    }
+}
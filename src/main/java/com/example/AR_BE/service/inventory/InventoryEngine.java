@@ -0,0 +1,67 @@
+package com.example.AR_BE.service.inventory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.AR_BE.domain.Product;
+
+/**
+ * Nơi giữ/trừ stock cho checkout. Chọn implementation bằng
+ * {@code app.inventory.engine} (database | memory).
+ */
+public interface InventoryEngine {
+
+    /**
+     * Engine có lock row products khi checkout hay không.
+     * Nếu có, ProductService load product bằng SELECT ... FOR UPDATE và validate trước.
+     */
+    boolean locksProductRows();
+
+    /**
+     * Trừ stock cho cả đơn (all-or-nothing).
+     * Ném RuntimeException nếu có product không đủ hàng.
+     *
+     * @param quantities productId -> số lượng
+     */
+    void reserve(Map<Long, Integer> quantities);
+
+    /**
+     * Hoàn lại stock (hủy đơn).
+     *
+     * @param quantities productId -> số lượng
+     */
+    void release(Map<Long, Integer> quantities);
+
+    /**
+     * Stock đang có để hiển thị cho client (đã cộng shard của product hot).
+     *
+     * @return productId -> stock
+     */
+    default Map<Long, Integer> available(Collection<Product> products) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        List<Long> hotIds = new ArrayList<>();
+        for (Product p : products) {
+            quantities.put(p.getId(), p.getQuantity() != null ? p.getQuantity() : 0);
+            if (Boolean.TRUE.equals(p.getHot())) {
+                hotIds.add(p.getId());
+            }
+        }
+        return available(quantities, hotIds);
+    }
+
+    /**
+     * Như trên, chỉ cần products.quantity và id các product hot (không load entity).
+     *
+     * @param quantities productId -> products.quantity
+     * @return productId -> stock
+     */
+    Map<Long, Integer> available(Map<Long, Integer> quantities, Collection<Long> hotIds);
+
+    /**
+     * Admin ghi đè quantity của product (ProductService.update).
+     */
+    void overwrite(Long productId, int quantity);
+}
@@ -0,0 +1,252 @@
+package com.example.AR_BE.service.inventory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.AR_BE.domain.Product;
+import com.example.AR_BE.domain.ProductStockShard;
+import com.example.AR_BE.domain.dto.StockShardsDTO;
+import com.example.AR_BE.repository.ProductRepository;
+import com.example.AR_BE.repository.ProductStockShardRepository;
+import com.example.AR_BE.utils.exception.IdInvalidException;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Stock của product "hot" được chia vào N row product_stock_shards.
+ * Mỗi checkout trừ 1 shard chọn ngẫu nhiên còn hàng, nên các checkout đồng thời
+ * lock các row khác nhau thay vì cùng chờ row products.
+ *
+ * Tổng stock luôn = products.quantity + SUM(shard.quantity).
+ */
+@Service
+@RequiredArgsConstructor
+public class StockShardService {
+
+    public static final int MAX_SHARDS = 64;
+    private static final int MAX_SINGLE_SHARD_ATTEMPTS = 3;
+
+    private final ProductStockShardRepository shardRepo;
+    private final ProductRepository productRepo;
+
+    // productId -> số shard, chỉ chứa product hot
+    private volatile Map<Long, Integer> shardCounts = Map.of();
+
+    public boolean isHot(Long productId) {
+        return shardCounts.containsKey(productId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.shards.refresh-interval-ms:30000}")
+    public void refreshShardCounts() {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Object[] row : shardRepo.countShardsByProduct()) {
+            counts.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        this.shardCounts = counts;
+    }
+
+    /**
+     * Trừ stock trên shard. Ưu tiên 1 shard ngẫu nhiên đủ hàng; nếu không shard nào
+     * đủ riêng lẻ thì lock toàn bộ shard theo thứ tự và lấy dần.
+     *
+     * @return false nếu tổng các shard không đủ hàng
+     */
+    public boolean tryTake(Long productId, int quantity) {
+        List<Object[]> snapshot = shardRepo.findShardQuantities(productId);
+        if (snapshot.isEmpty()) {
+            return false;
+        }
+
+        List<Integer> candidates = new ArrayList<>();
+        for (Object[] row : snapshot) {
+            if (((Number) row[1]).intValue() >= quantity) {
+                candidates.add(((Number) row[0]).intValue());
+            }
+        }
+        Collections.shuffle(candidates, ThreadLocalRandom.current());
+
+        int attempts = Math.min(candidates.size(), MAX_SINGLE_SHARD_ATTEMPTS);
+        for (int i = 0; i < attempts; i++) {
+            if (shardRepo.decrementShard(productId, candidates.get(i), quantity) == 1) {
+                return true;
+            }
+        }
+        return takeAcrossShards(productId, quantity);
+    }
+
+    /**
+     * Cộng stock vào 1 shard ngẫu nhiên.
+     *
+     * @return false nếu product không có shard
+     */
+    public boolean give(Long productId, int quantity) {
+        Integer count = shardCounts.get(productId);
+        if (count == null) {
+            return false;
+        }
+        int shardNo = ThreadLocalRandom.current().nextInt(count);
+        return shardRepo.incrementShard(productId, shardNo, quantity) == 1;
+    }
+
+    /**
+     * productId -> SUM(shard.quantity), 1 query cho cả danh sách.
+     */
+    public Map<Long, Integer> sumByProductIds(Collection<Long> productIds) {
+        Map<Long, Integer> totals = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return totals;
+        }
+        for (Object[] row : shardRepo.sumQuantityByProductIdIn(productIds)) {
+            totals.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return totals;
+    }
+
+    public StockShardsDTO getShards(Long productId) {
+        Product p = productRepo.findById(productId)
+                .orElseThrow(() -> new IdInvalidException("Product with id " + productId + " not found"));
+        List<Integer> shards = new ArrayList<>();
+        int total = p.getQuantity() != null ? p.getQuantity() : 0;
+        for (ProductStockShard shard : shardRepo.findByProductIdOrderByShardNo(productId)) {
+            shards.add(shard.getQuantity());
+            total += shard.getQuantity();
+        }
+        return new StockShardsDTO(productId, total, shards);
+    }
+
+    /**
+     * Bật shard cho product (hoặc đổi số shard) và chia đều lại toàn bộ stock.
+     * Cũng dùng để gom phần stock lệch giữa các shard / còn nằm ở products.quantity.
+     *
+     * @param shardCount null = giữ nguyên số shard hiện tại
+     */
+    @Transactional
+    public StockShardsDTO rebalance(Long productId, Integer shardCount) {
+        Product p = productRepo.findByIdForUpdate(productId)
+                .orElseThrow(() -> new IdInvalidException("Product with id " + productId + " not found"));
+
+        List<ProductStockShard> current = shardRepo.findAllByProductIdForUpdate(productId);
+        int count = shardCount != null ? shardCount : current.size();
+        if (count < 1 || count > MAX_SHARDS) {
+            throw new IdInvalidException("Số shard phải nằm trong khoảng 1.." + MAX_SHARDS);
+        }
+
+        int total = p.getQuantity() != null ? p.getQuantity() : 0;
+        for (ProductStockShard shard : current) {
+            total += shard.getQuantity();
+        }
+
+        shardRepo.deleteByProductId(productId);
+        List<Integer> amounts = distribute(total, count);
+        List<ProductStockShard> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ProductStockShard shard = new ProductStockShard();
+            shard.setProductId(productId);
+            shard.setShardNo(i);
+            shard.setQuantity(amounts.get(i));
+            shards.add(shard);
+        }
+        shardRepo.saveAll(shards);
+
+        p.setQuantity(0);
+        p.setHot(true);
+        refreshAfterCommit();
+
+        return new StockShardsDTO(productId, total, amounts);
+    }
+
+    /**
+     * Tắt shard: gom toàn bộ stock về products.quantity.
+     */
+    @Transactional
+    public StockShardsDTO disable(Long productId) {
+        Product p = productRepo.findByIdForUpdate(productId)
+                .orElseThrow(() -> new IdInvalidException("Product with id " + productId + " not found"));
+
+        int total = p.getQuantity() != null ? p.getQuantity() : 0;
+        for (ProductStockShard shard : shardRepo.findAllByProductIdForUpdate(productId)) {
+            total += shard.getQuantity();
+        }
+        shardRepo.deleteByProductId(productId);
+
+        p.setQuantity(total);
+        p.setHot(false);
+        refreshAfterCommit();
+
+        return new StockShardsDTO(productId, total, List.of());
+    }
+
+    /**
+     * Admin ghi đè tổng stock của product hot: chia lại vào các shard hiện có.
+     * Caller chịu trách nhiệm set products.quantity = 0 trong cùng transaction.
+     */
+    public void redistribute(Long productId, int total) {
+        List<ProductStockShard> shards = shardRepo.findAllByProductIdForUpdate(productId);
+        List<Integer> amounts = distribute(total, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setQuantity(amounts.get(i));
+        }
+    }
+
+    private boolean takeAcrossShards(Long productId, int quantity) {
+        List<ProductStockShard> shards = shardRepo.findAllByProductIdForUpdate(productId);
+        int total = 0;
+        for (ProductStockShard shard : shards) {
+            total += Math.max(shard.getQuantity(), 0);
+        }
+        if (total < quantity) {
+            return false;
+        }
+
+        int remaining = quantity;
+        for (ProductStockShard shard : shards) {
+            int take = Math.min(Math.max(shard.getQuantity(), 0), remaining);
+            shard.setQuantity(shard.getQuantity() - take);
+            remaining -= take;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private static List<Integer> distribute(int total, int count) {
+        List<Integer> amounts = new ArrayList<>(count);
+        if (count == 0) {
+            return amounts;
+        }
+        if (total <= 0) {
+            amounts.add(total);
+            for (int i = 1; i < count; i++) {
+                amounts.add(0);
+            }
+            return amounts;
+        }
+        int base = total / count;
+        int remainder = total % count;
+        for (int i = 0; i < count; i++) {
+            amounts.add(base + (i < remainder ? 1 : 0));
+        }
+        return amounts;
+    }
+
+    private void refreshAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshShardCounts();
+            }
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.AR_BE.utils;
+
+import com.example.AR_BE.utils.constants.RoleEnum;
+
+/**
+ * User đang đăng nhập, lấy từ claim "User" của access token (đã verify).
+ * Dùng khi chỉ cần id / email / role, không phải query bảng users.
+ */
+public class CurrentUser {
+
+    private final Long id;
+    private final String email;
+    private final String name;
+    // Tên role; null nếu token cũ chưa có role hoặc user không có role
+    private final String role;
+
+    public CurrentUser(Long id, String email, String name, String role) {
+        this.id = id;
+        this.email = email;
+        this.name = name;
+        this.role = role;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public RoleEnum getRoleEnum() {
+        if (role == null) {
+            throw new RuntimeException("User has no role");
+        }
+        return RoleEnum.valueOf(role.toUpperCase());
+    }
+}
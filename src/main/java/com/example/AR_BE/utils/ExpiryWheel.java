@@ -0,0 +1,124 @@
+package com.example.AR_BE.utils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel cho các id có hạn dùng (vd: reservation giữ hàng).
+ *
+ * Mỗi bucket là một ConcurrentLinkedQueue nên schedule() không cần lock.
+ * Một thread duy nhất quay wheel mỗi tick, gom các id đã hết hạn và giao cho
+ * handler theo batch, thay vì quét DB cho từng id.
+ * Id có hạn xa hơn 1 vòng wheel chỉ được đưa lại vào bucket cho vòng sau.
+ */
+public class ExpiryWheel {
+
+    private final long tickMillis;
+    private final int mask;
+    private final int batchSize;
+    private final ConcurrentLinkedQueue<Entry>[] buckets;
+    private final Consumer<List<Long>> onExpired;
+    private final ScheduledExecutorService ticker;
+
+    // Chỉ thread ticker ghi
+    private volatile long lastTick;
+
+    /**
+     * @param tickMillis độ phân giải của wheel
+     * @param wheelSize  số bucket, làm tròn lên lũy thừa của 2
+     * @param batchSize  số id tối đa mỗi lần gọi handler
+     * @param onExpired  handler nhận batch id đã hết hạn (chạy trên thread ticker)
+     */
+    @SuppressWarnings("unchecked")
+    public ExpiryWheel(long tickMillis, int wheelSize, int batchSize, Consumer<List<Long>> onExpired) {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.batchSize = batchSize;
+        this.onExpired = onExpired;
+        this.buckets = new ConcurrentLinkedQueue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastTick = currentTick();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expiry-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    public void schedule(long id, Instant expiresAt) {
+        // Đã quá hạn -> xử lý ở tick kế tiếp
+        long deadlineTick = Math.max(Math.floorDiv(expiresAt.toEpochMilli(), tickMillis) + 1, lastTick + 1);
+        buckets[(int) (deadlineTick & mask)].offer(new Entry(id, deadlineTick));
+    }
+
+    private void advance() {
+        long now = currentTick();
+        List<Long> expired = new ArrayList<>();
+        long from = lastTick + 1;
+        // Trễ hơn 1 vòng thì chỉ cần quét mỗi bucket 1 lần
+        if (now - from > mask) {
+            from = now - mask;
+        }
+        for (long tick = from; tick <= now; tick++) {
+            drain(buckets[(int) (tick & mask)], now, expired);
+        }
+        lastTick = now;
+
+        for (int i = 0; i < expired.size(); i += batchSize) {
+            List<Long> batch = expired.subList(i, Math.min(i + batchSize, expired.size()));
+            try {
+                onExpired.accept(new ArrayList<>(batch));
+            } catch (RuntimeException e) {
+                // Handler lỗi (vd: mất kết nối DB) -> thử lại sau 1 vòng ngắn
+                System.err.println("Expiry wheel handler failed: " + e.getMessage());
+                Instant retryAt = Instant.now().plusMillis(tickMillis * 30);
+                batch.forEach(id -> schedule(id, retryAt));
+            }
+        }
+    }
+
+    private void drain(ConcurrentLinkedQueue<Entry> bucket, long now, List<Long> expired) {
+        List<Entry> pending = new ArrayList<>();
+        Entry entry;
+        while ((entry = bucket.poll()) != null) {
+            if (entry.deadlineTick <= now) {
+                expired.add(entry.id);
+            } else {
+                pending.add(entry);
+            }
+        }
+        // Chưa tới hạn (vòng sau) -> trả lại bucket
+        pending.forEach(bucket::offer);
+    }
+
+    private long currentTick() {
+        return System.currentTimeMillis() / tickMillis;
+    }
+
+    private static final class Entry {
+        private final long id;
+        private final long deadlineTick;
+
+        private Entry(long id, long deadlineTick) {
+            this.id = id;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -23,6 +24,8 @@ import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import com.nimbusds.jose.util.Base64;
 
@@ -35,6 +38,7 @@ import org.springframework.security.core.context.SecurityContext;
 public class SecurityUtils {
 
     public static final MacAlgorithm JWT_ALGORITHM = MacAlgorithm.HS512;
+    private static final String CURRENT_USER_ATTRIBUTE = SecurityUtils.class.getName() + ".currentUser";
     private final JwtEncoder jwtEncoder;
 
     public SecurityUtils(JwtEncoder jwtEncoder) {
@@ -55,6 +59,7 @@ public class SecurityUtils {
         userInsideToken.setId(user.getId());
         userInsideToken.setEmail(user.getEmail());
         userInsideToken.setName(user.getName());
+        userInsideToken.setRole(user.getRole() != null ? user.getRole().getName() : null);
         Instant now = Instant.now();
         Instant validity = now.plus(this.jwtAccessTokenValidity, ChronoUnit.SECONDS);
         List<String> listAuthority = new ArrayList<String>();
@@ -113,6 +118,50 @@ public class SecurityUtils {
         return null;
     }
 
+    /**
+     * Get the current user (id, email, name, role) from the verified access token.
+     * Parsed once per request and kept in the request attributes.
+     *
+     * @return empty if the current authentication is not a JWT with a "User" claim.
+     */
+    public static Optional<CurrentUser> getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof Jwt jwt)) {
+            return Optional.empty();
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && attributes.getAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+                        instanceof CurrentUser cached
+                && cached.getEmail().equals(jwt.getSubject())) {
+            return Optional.of(cached);
+        }
+
+        CurrentUser currentUser = extractCurrentUser(jwt);
+        if (currentUser != null && attributes != null) {
+            attributes.setAttribute(CURRENT_USER_ATTRIBUTE, currentUser, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.ofNullable(currentUser);
+    }
+
+    /**
+     * Read the "User" claim of a verified access token (also used by the WebSocket CONNECT).
+     *
+     * @return null if the token has no "User" claim with an id.
+     */
+    public static CurrentUser extractCurrentUser(Jwt jwt) {
+        Object claim = jwt.getClaims().get("User");
+        if (!(claim instanceof Map<?, ?> user) || !(user.get("id") instanceof Number id)) {
+            return null;
+        }
+        Object name = user.get("name");
+        Object role = user.get("role");
+        return new CurrentUser(id.longValue(), jwt.getSubject(),
+                name != null ? name.toString() : null,
+                role != null ? role.toString() : null);
+    }
+
     /**
      * Get the JWT of the current user.
      *
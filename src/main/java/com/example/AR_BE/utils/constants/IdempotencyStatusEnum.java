@@ -0,0 +1,5 @@
+package com.example.AR_BE.utils.constants;
+
+public enum IdempotencyStatusEnum {
+    IN_PROGRESS, COMPLETED
+}
@@ -0,0 +1,19 @@
+package com.example.AR_BE.utils.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+    // Giây client nên chờ trước khi thử lại (header Retry-After), null = không gửi
+    private final Long retryAfterSeconds;
+
+    public TooManyRequestsException(String message) {
+        this(message, null);
+    }
+
+    public TooManyRequestsException(String message, Long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public Long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
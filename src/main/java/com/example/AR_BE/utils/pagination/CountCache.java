@@ -0,0 +1,110 @@
+package com.example.AR_BE.utils.pagination;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cache tổng số dòng (Meta.total) theo từng bộ lọc của các endpoint list.
+ *
+ * Mỗi region (orders, products...) giữ các count theo key của bộ lọc, sống
+ * trong ttl-ms. Service gọi invalidate khi ghi vào bảng tương ứng; việc xóa
+ * được làm ngay và làm lại sau commit để count tính trong lúc transaction ghi
+ * còn chạy không bị giữ lại. Total vì vậy là gần đúng trong khoảng TTL.
+ */
+@Component
+public class CountCache {
+
+    public static final String ORDERS = "orders";
+    public static final String PRODUCTS = "products";
+    public static final String USERS = "users";
+    public static final String ROLES = "roles";
+    public static final String PERMISSIONS = "permissions";
+
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    @Value("${app.pagination.count-cache.ttl-ms:30000}")
+    private long ttlMs;
+
+    @Value("${app.pagination.count-cache.max-entries:10000}")
+    private int maxEntries;
+
+    private static final class Region {
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        // Tăng mỗi lần invalidate: count bắt đầu trước đó không được đưa vào cache
+        private final AtomicLong generation = new AtomicLong();
+    }
+
+    private static final class Entry {
+        private final long value;
+        private final long expiresAt;
+
+        private Entry(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param filterKey key của bộ lọc (không gồm page/size/sort)
+     * @param counter   câu COUNT thật, chỉ chạy khi cache miss
+     */
+    public long count(String region, String filterKey, LongSupplier counter) {
+        Region cached = regions.computeIfAbsent(region, r -> new Region());
+        String key = filterKey == null ? "" : filterKey;
+        long now = System.currentTimeMillis();
+
+        Entry entry = cached.entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.value;
+        }
+
+        long generation = cached.generation.get();
+        long value = counter.getAsLong();
+        if (cached.generation.get() == generation) {
+            if (cached.entries.size() >= maxEntries) {
+                cached.entries.values().removeIf(e -> e.expiresAt <= now);
+            }
+            if (cached.entries.size() < maxEntries) {
+                cached.entries.put(key, new Entry(value, now + ttlMs));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Xóa count của region (không truyền key = cả region).
+     */
+    public void invalidate(String region, String... filterKeys) {
+        evict(region, filterKeys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(region, filterKeys);
+                }
+            });
+        }
+    }
+
+    private void evict(String region, String... filterKeys) {
+        Region cached = regions.get(region);
+        if (cached == null) {
+            return;
+        }
+        cached.generation.incrementAndGet();
+        if (filterKeys.length == 0) {
+            cached.entries.clear();
+        } else {
+            for (String key : filterKeys) {
+                cached.entries.remove(key);
+            }
+        }
+    }
+}
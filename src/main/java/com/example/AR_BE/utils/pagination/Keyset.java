@@ -0,0 +1,170 @@
+package com.example.AR_BE.utils.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import com.example.AR_BE.utils.exception.IdInvalidException;
+
+import jakarta.persistence.criteria.Path;
+
+/**
+ * Phân trang keyset (cursor) cho các endpoint list.
+ *
+ * Thay vì LIMIT offset, trang sau được lấy bằng điều kiện
+ * (sortKey, id) > (giá trị của dòng cuối trang trước), nên chi phí không tăng
+ * theo độ sâu trang. Cursor gửi cho client là base64 của "sortKey|id".
+ *
+ * Opt-in: request có tham số cursor (rỗng = trang đầu) thì dùng chế độ này.
+ */
+public final class Keyset {
+
+    private static final String ID = "id";
+
+    private Keyset() {
+    }
+
+    /**
+     * Vị trí đã giải mã từ cursor. sortValue = null khi sort theo id.
+     */
+    public static final class Cursor {
+        private final Object sortValue;
+        private final Long id;
+
+        public Cursor(Object sortValue, Long id) {
+            this.sortValue = sortValue;
+            this.id = id;
+        }
+
+        public Object getSortValue() {
+            return sortValue;
+        }
+
+        public Long getId() {
+            return id;
+        }
+    }
+
+    /**
+     * 1 trang kết quả + cursor của trang sau (null nếu hết).
+     */
+    public static final class Page<T> {
+        private final List<T> content;
+        private final String nextCursor;
+
+        public Page(List<T> content, String nextCursor) {
+            this.content = content;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<T> getContent() {
+            return content;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    public static String encode(Object sortValue, Long id) {
+        String key;
+        if (sortValue == null) {
+            key = "N:";
+        } else if (sortValue instanceof Instant) {
+            key = "T:" + sortValue;
+        } else if (sortValue instanceof Number) {
+            key = "L:" + ((Number) sortValue).longValue();
+        } else {
+            key = "S:" + sortValue;
+        }
+        String raw = key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null khi cursor rỗng (trang đầu)
+     */
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            String key = raw.substring(0, sep);
+            Long id = Long.valueOf(raw.substring(sep + 1));
+            String value = key.substring(2);
+            switch (key.charAt(0)) {
+                case 'N':
+                    return new Cursor(null, id);
+                case 'T':
+                    return new Cursor(Instant.parse(value), id);
+                case 'L':
+                    return new Cursor(Long.valueOf(value), id);
+                case 'S':
+                    return new Cursor(value, id);
+                default:
+                    throw new IllegalArgumentException(key);
+            }
+        } catch (RuntimeException e) {
+            throw new IdInvalidException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Điều kiện "sau cursor" theo (sortProperty, id), cùng chiều direction.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static <T> Specification<T> after(String sortProperty, Sort.Direction direction, Cursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return cb.conjunction();
+            }
+            Path<Long> id = root.get(ID);
+            boolean desc = direction.isDescending();
+            if (ID.equals(sortProperty) || cursor.getSortValue() == null) {
+                return desc ? cb.lessThan(id, cursor.getId()) : cb.greaterThan(id, cursor.getId());
+            }
+            Path<Comparable> key = root.get(sortProperty);
+            Comparable value = (Comparable) cursor.getSortValue();
+            return cb.or(
+                    desc ? cb.lessThan(key, value) : cb.greaterThan(key, value),
+                    cb.and(cb.equal(key, value),
+                            desc ? cb.lessThan(id, cursor.getId()) : cb.greaterThan(id, cursor.getId())));
+        };
+    }
+
+    /**
+     * Lấy 1 trang theo keyset: sort (sortProperty, id), LIMIT size + 1 để biết còn trang sau.
+     *
+     * @param sortValueOf lấy giá trị sortProperty của 1 dòng (để tạo cursor)
+     */
+    public static <T> Page<T> fetch(JpaSpecificationExecutor<T> repository, Specification<T> spec,
+            String sortProperty, Sort.Direction direction, String cursor, int size,
+            Function<T, Object> sortValueOf, Function<T, Long> idOf) {
+        Specification<T> afterCursor = after(sortProperty, direction, decode(cursor));
+        Specification<T> where = spec == null ? afterCursor : spec.and(afterCursor);
+        Sort sort = ID.equals(sortProperty)
+                ? Sort.by(direction, ID)
+                : Sort.by(direction, sortProperty).and(Sort.by(direction, ID));
+        List<T> rows = repository.<T, List<T>>findBy(where, q -> q.sortBy(sort).limit(size + 1).all());
+        return page(rows, size, row -> encode(ID.equals(sortProperty) ? null : sortValueOf.apply(row), idOf.apply(row)));
+    }
+
+    /**
+     * Cắt kết quả đã lấy LIMIT size + 1 thành 1 trang + cursor của dòng cuối.
+     */
+    public static <T> Page<T> page(List<T> rows, int size, Function<T, String> cursorOf) {
+        if (rows.size() <= size) {
+            return new Page<>(rows, null);
+        }
+        List<T> content = rows.subList(0, size);
+        return new Page<>(content, cursorOf.apply(content.get(size - 1)));
+    }
+}
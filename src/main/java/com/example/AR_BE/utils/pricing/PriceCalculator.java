@@ -7,8 +7,12 @@ import com.example.AR_BE.domain.Product;
 @Component
 public class PriceCalculator {
     public double calculatePrice(Product product) {
-        double basePrice = product.getOldPrice() != null ? product.getOldPrice() : 0.0;
-        double saleRate = product.getSaleRate() != null ? product.getSaleRate() : 0.0;
+        return calculatePrice(product.getOldPrice(), product.getSaleRate());
+    }
+
+    public double calculatePrice(Double oldPrice, Double rate) {
+        double basePrice = oldPrice != null ? oldPrice : 0.0;
+        double saleRate = rate != null ? rate : 0.0;
         double discount = (saleRate >= 1.0) ? saleRate / 100.0 : saleRate;
 
         return basePrice * (1 - discount);
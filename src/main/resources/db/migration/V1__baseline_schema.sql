@@ -0,0 +1,126 @@
+-- Schema gốc (trước đây do Hibernate ddl-auto=update tạo).
+-- Database đã có dữ liệu được baseline ở version 1 (spring.flyway.baseline-on-migrate),
+-- nên file này chỉ chạy trên database trống.
+
+CREATE TABLE roles (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    name        VARCHAR(255),
+    description VARCHAR(255),
+    active      BIT          NOT NULL,
+    created_at  DATETIME(6),
+    updated_at  DATETIME(6),
+    created_by  VARCHAR(255),
+    updated_by  VARCHAR(255),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE permissions (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    name       VARCHAR(255),
+    api_path   VARCHAR(255),
+    method     VARCHAR(255),
+    module     VARCHAR(255),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    created_by VARCHAR(255),
+    updated_by VARCHAR(255),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE permission_role (
+    role_id       BIGINT NOT NULL,
+    permission_id BIGINT NOT NULL,
+    CONSTRAINT fk_permission_role_role FOREIGN KEY (role_id) REFERENCES roles (id),
+    CONSTRAINT fk_permission_role_permission FOREIGN KEY (permission_id) REFERENCES permissions (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE users (
+    id            BIGINT       NOT NULL AUTO_INCREMENT,
+    name          VARCHAR(255),
+    email         VARCHAR(255),
+    password      VARCHAR(255),
+    age           INTEGER      NOT NULL,
+    gender        VARCHAR(16),
+    refresh_token MEDIUMTEXT,
+    address       VARCHAR(255),
+    phone_number  VARCHAR(255),
+    role_id       BIGINT,
+    created_at    DATETIME(6),
+    updated_at    DATETIME(6),
+    created_by    VARCHAR(255),
+    updated_by    VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_users_role FOREIGN KEY (role_id) REFERENCES roles (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE categories (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    name       VARCHAR(255),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    created_by VARCHAR(255),
+    updated_by VARCHAR(255),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE products (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    name        VARCHAR(255),
+    old_price   DOUBLE,
+    sale_rate   DOUBLE,
+    quantity    INTEGER,
+    description MEDIUMTEXT,
+    category_id BIGINT,
+    created_at  DATETIME(6),
+    updated_at  DATETIME(6),
+    created_by  VARCHAR(255),
+    updated_by  VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_products_category FOREIGN KEY (category_id) REFERENCES categories (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE product_images (
+    product_id BIGINT NOT NULL,
+    image_url  VARCHAR(255),
+    CONSTRAINT fk_product_images_product FOREIGN KEY (product_id) REFERENCES products (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE product_ar_model (
+    id            BIGINT       NOT NULL AUTO_INCREMENT,
+    glb_url       VARCHAR(255) NOT NULL,
+    scale_x       FLOAT,
+    scale_y       FLOAT,
+    scale_z       FLOAT,
+    rotation_y    FLOAT,
+    is_ar_enabled BIT,
+    product_id    BIGINT       NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_product_ar_model_product UNIQUE (product_id),
+    CONSTRAINT fk_product_ar_model_product FOREIGN KEY (product_id) REFERENCES products (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE orders (
+    id               BIGINT       NOT NULL AUTO_INCREMENT,
+    user_id          BIGINT,
+    total_amount     DOUBLE,
+    shipping_address VARCHAR(255),
+    status           VARCHAR(16),
+    created_at       DATETIME(6),
+    updated_at       DATETIME(6),
+    created_by       VARCHAR(255),
+    updated_by       VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_orders_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE order_items (
+    id                BIGINT       NOT NULL AUTO_INCREMENT,
+    order_id          BIGINT,
+    product_id        BIGINT,
+    quantity          INTEGER,
+    price_at_purchase DOUBLE,
+    product_type      VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_order_items_order FOREIGN KEY (order_id) REFERENCES orders (id),
+    CONSTRAINT fk_order_items_product FOREIGN KEY (product_id) REFERENCES products (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,70 @@
+-- Bảng / cột thêm cho inventory engine, stock shard, reservation, idempotency và id pooled.
+-- Có thể đã được ddl-auto=update tạo trên database đang chạy nên dùng IF NOT EXISTS.
+
+-- products.hot (MySQL không có ADD COLUMN IF NOT EXISTS)
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns
+               WHERE table_schema = DATABASE() AND table_name = 'products' AND column_name = 'hot') = 0,
+              'ALTER TABLE products ADD COLUMN hot BIT DEFAULT 0',
+              'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+CREATE TABLE IF NOT EXISTS product_stock_shards (
+    id         BIGINT  NOT NULL AUTO_INCREMENT,
+    product_id BIGINT  NOT NULL,
+    shard_no   INTEGER NOT NULL,
+    quantity   INTEGER NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_product_stock_shards_product_shard UNIQUE (product_id, shard_no)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS stock_ledger (
+    id         BIGINT  NOT NULL AUTO_INCREMENT,
+    product_id BIGINT  NOT NULL,
+    delta      INTEGER NOT NULL,
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    INDEX idx_stock_ledger_product (product_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS stock_reservations (
+    id         BIGINT NOT NULL AUTO_INCREMENT,
+    user_id    BIGINT,
+    status     VARCHAR(16),
+    expires_at DATETIME(6),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    created_by VARCHAR(255),
+    updated_by VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_stock_reservations_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS stock_reservation_items (
+    id             BIGINT NOT NULL AUTO_INCREMENT,
+    reservation_id BIGINT,
+    product_id     BIGINT,
+    quantity       INTEGER,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_stock_reservation_items_reservation FOREIGN KEY (reservation_id) REFERENCES stock_reservations (id),
+    CONSTRAINT fk_stock_reservation_items_product FOREIGN KEY (product_id) REFERENCES products (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    scoped_key  VARCHAR(191) NOT NULL,
+    fingerprint VARCHAR(64)  NOT NULL,
+    status      VARCHAR(16)  NOT NULL,
+    response    TEXT,
+    created_at  DATETIME(6),
+    expires_at  DATETIME(6)  NOT NULL,
+    PRIMARY KEY (scoped_key),
+    INDEX idx_idempotency_keys_expires (expires_at)
+) ENGINE = InnoDB;
+
+-- Id pooled cho orders / order_items (xem IdGeneratorInitializer)
+CREATE TABLE IF NOT EXISTS id_generators (
+    name     VARCHAR(255) NOT NULL,
+    next_val BIGINT,
+    PRIMARY KEY (name)
+) ENGINE = InnoDB;
@@ -0,0 +1,30 @@
+-- Index theo các query thực tế của repository.
+
+-- users: findByEmail (mỗi request có token), existsByEmail, existsByPhoneNumber
+-- Lưu ý: migration sẽ fail nếu dữ liệu hiện có bị trùng email / phone, cần dọn trước khi deploy.
+ALTER TABLE users
+    ADD CONSTRAINT uk_users_email UNIQUE (email),
+    ADD CONSTRAINT uk_users_phone_number UNIQUE (phone_number);
+
+-- roles / categories: findByName, existsByName
+CREATE INDEX idx_roles_name ON roles (name);
+CREATE INDEX idx_categories_name ON categories (name);
+
+-- permissions: existsByModuleAndApiPathAndMethod
+CREATE INDEX idx_permissions_module_path_method ON permissions (module, api_path, method);
+
+-- orders:
+--   đơn của user theo status, sort created_at DESC (offset + keyset (created_at, id))
+--   admin: theo status / tất cả, sort created_at DESC
+CREATE INDEX idx_orders_user_status_created ON orders (user_id, status, created_at, id);
+CREATE INDEX idx_orders_status_created ON orders (status, created_at, id);
+CREATE INDEX idx_orders_created ON orders (created_at, id);
+
+-- products: lọc theo category, sort theo id
+CREATE INDEX idx_products_category_id ON products (category_id, id);
+
+-- stock_reservations: nạp ACTIVE vào expiry wheel, expire theo (status, expires_at)
+CREATE INDEX idx_stock_reservations_status_expires ON stock_reservations (status, expires_at);
+
+-- stock_reservation_items: SUM(quantity) đang giữ theo product (covering)
+CREATE INDEX idx_stock_reservation_items_product ON stock_reservation_items (product_id, reservation_id, quantity);
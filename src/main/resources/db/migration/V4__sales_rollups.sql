@@ -0,0 +1,56 @@
+-- Rollup doanh số theo giờ / ngày cho báo cáo admin (SalesRollupService).
+--
+-- OrderService ghi delta (insert-only, không tranh chấp row) trong cùng
+-- transaction với đơn; job fold gom delta vào 2 bảng rollup rồi xóa delta.
+-- Bucket tính theo orders.created_at của đơn (giờ UTC / ngày theo app.reports.zone).
+
+CREATE TABLE sales_rollup_deltas (
+    id               BIGINT      NOT NULL AUTO_INCREMENT,
+    order_id         BIGINT      NOT NULL,
+    order_created_at DATETIME(6) NOT NULL,
+    product_id       BIGINT      NOT NULL,
+    category_id      BIGINT      NOT NULL,
+    -- PLACED | CANCELLED | DELIVERED
+    kind             VARCHAR(16) NOT NULL,
+    -- +1 / -1 (hủy đơn đã giao → trừ DELIVERED)
+    sign             TINYINT     NOT NULL,
+    -- 1 cho dòng đầu tiên của (order, category): đếm đơn theo category không bị trùng
+    category_first   TINYINT     NOT NULL,
+    units            INTEGER     NOT NULL,
+    revenue          DOUBLE      NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_sales_rollup_deltas_created (order_created_at)
+) ENGINE = InnoDB;
+
+-- dimension: CATEGORY | PRODUCT
+CREATE TABLE sales_rollup_hourly (
+    bucket_start      DATETIME    NOT NULL,
+    dimension         VARCHAR(16) NOT NULL,
+    dimension_id      BIGINT      NOT NULL,
+    placed_orders     BIGINT      NOT NULL DEFAULT 0,
+    placed_units      BIGINT      NOT NULL DEFAULT 0,
+    placed_revenue    DOUBLE      NOT NULL DEFAULT 0,
+    cancelled_orders  BIGINT      NOT NULL DEFAULT 0,
+    cancelled_units   BIGINT      NOT NULL DEFAULT 0,
+    cancelled_revenue DOUBLE      NOT NULL DEFAULT 0,
+    delivered_orders  BIGINT      NOT NULL DEFAULT 0,
+    delivered_units   BIGINT      NOT NULL DEFAULT 0,
+    delivered_revenue DOUBLE      NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, dimension, dimension_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE sales_rollup_daily (
+    bucket_date       DATE        NOT NULL,
+    dimension         VARCHAR(16) NOT NULL,
+    dimension_id      BIGINT      NOT NULL,
+    placed_orders     BIGINT      NOT NULL DEFAULT 0,
+    placed_units      BIGINT      NOT NULL DEFAULT 0,
+    placed_revenue    DOUBLE      NOT NULL DEFAULT 0,
+    cancelled_orders  BIGINT      NOT NULL DEFAULT 0,
+    cancelled_units   BIGINT      NOT NULL DEFAULT 0,
+    cancelled_revenue DOUBLE      NOT NULL DEFAULT 0,
+    delivered_orders  BIGINT      NOT NULL DEFAULT 0,
+    delivered_units   BIGINT      NOT NULL DEFAULT 0,
+    delivered_revenue DOUBLE      NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_date, dimension, dimension_id)
+) ENGINE = InnoDB;
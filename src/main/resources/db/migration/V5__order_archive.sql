@@ -0,0 +1,32 @@
+-- Đơn đã kết thúc (DELIVERED / CANCELLED) quá app.orders.archive.min-age-days được
+-- OrderArchiveService chuyển sang 2 bảng archive, orders / order_items chỉ còn đơn "nóng".
+-- Cột giống bảng gốc (id giữ nguyên), không FK để xóa được dữ liệu gốc độc lập.
+
+CREATE TABLE orders_archive (
+    id               BIGINT      NOT NULL,
+    user_id          BIGINT,
+    total_amount     DOUBLE,
+    shipping_address VARCHAR(255),
+    status           VARCHAR(16),
+    created_at       DATETIME(6),
+    updated_at       DATETIME(6),
+    created_by       VARCHAR(255),
+    updated_by       VARCHAR(255),
+    archived_at      DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    -- Cùng các index đọc của orders (V3)
+    INDEX idx_orders_archive_user_status_created (user_id, status, created_at, id),
+    INDEX idx_orders_archive_status_created (status, created_at, id),
+    INDEX idx_orders_archive_created (created_at, id)
+) ENGINE = InnoDB;
+
+CREATE TABLE order_items_archive (
+    id                BIGINT NOT NULL,
+    order_id          BIGINT NOT NULL,
+    product_id        BIGINT,
+    quantity          INTEGER,
+    price_at_purchase DOUBLE,
+    product_type      VARCHAR(255),
+    PRIMARY KEY (id),
+    INDEX idx_order_items_archive_order (order_id, id)
+) ENGINE = InnoDB;
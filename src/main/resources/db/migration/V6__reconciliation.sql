@@ -0,0 +1,44 @@
+-- Đối soát stock / tổng tiền đơn (ReconciliationService).
+
+-- Tiến độ từng job: chạy lại sau khi crash tiếp tục từ next_id.
+-- lease_until: chỉ 1 instance chạy 1 job tại 1 thời điểm.
+CREATE TABLE reconciliation_checkpoints (
+    job            VARCHAR(32)  NOT NULL,
+    run_started_at DATETIME(6),
+    next_id        BIGINT,
+    max_id         BIGINT,
+    finished_at    DATETIME(6),
+    lease_owner    VARCHAR(64),
+    lease_until    DATETIME(6),
+    PRIMARY KEY (job)
+) ENGINE = InnoDB;
+
+INSERT INTO reconciliation_checkpoints (job) VALUES ('STOCK'), ('ORDER_TOTAL');
+
+-- Mốc stock của product: stock lúc lấy mốc và tổng số lượng đã giữ / bán tới lúc đó.
+-- product_updated_at đổi (admin sửa product / ghi đè quantity) → lấy mốc lại.
+CREATE TABLE stock_baselines (
+    product_id         BIGINT      NOT NULL,
+    stock              BIGINT      NOT NULL,
+    committed_units    BIGINT      NOT NULL,
+    product_updated_at DATETIME(6),
+    taken_at           DATETIME(6) NOT NULL,
+    PRIMARY KEY (product_id)
+) ENGINE = InnoDB;
+
+-- Lệch phát hiện được, mỗi lần chạy (run_started_at) 1 nhóm
+CREATE TABLE reconciliation_drifts (
+    id             BIGINT      NOT NULL AUTO_INCREMENT,
+    job            VARCHAR(32) NOT NULL,
+    run_started_at DATETIME(6) NOT NULL,
+    ref_id         BIGINT      NOT NULL,
+    expected       DOUBLE,
+    actual         DOUBLE,
+    repaired       BIT         NOT NULL DEFAULT 0,
+    detected_at    DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_reconciliation_drifts_job_run (job, run_started_at, ref_id)
+) ENGINE = InnoDB;
+
+-- SUM(quantity) theo product của đơn đã archive (đối soát stock quét theo product_id)
+CREATE INDEX idx_order_items_archive_product ON order_items_archive (product_id, order_id, quantity);
@@ -0,0 +1,8 @@
+-- Lease cho job định kỳ chỉ được chạy trên 1 instance (SchedulerLease).
+-- Row được tạo khi job giữ lease lần đầu.
+CREATE TABLE scheduler_leases (
+    name        VARCHAR(64) NOT NULL,
+    owner       VARCHAR(64) NOT NULL,
+    lease_until DATETIME(6) NOT NULL,
+    PRIMARY KEY (name)
+) ENGINE = InnoDB;
@@ -0,0 +1,225 @@
+package com.example.AR_BE.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.example.AR_BE.domain.Category;
+import com.example.AR_BE.domain.Order;
+import com.example.AR_BE.domain.OrderItem;
+import com.example.AR_BE.domain.Product;
+import com.example.AR_BE.domain.StockReservation;
+import com.example.AR_BE.domain.StockReservationItem;
+import com.example.AR_BE.domain.User;
+import com.example.AR_BE.utils.constants.ReservationStatusEnum;
+import com.example.AR_BE.utils.constants.StatusEnum;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import jakarta.persistence.EntityManager;
+
+/**
+ * So sánh số câu INSERT được prepare khi lưu 1 đơn nhiều item:
+ * - orders / order_items: id pooled từ id_generators → 1 batch cho mọi item
+ * - stock_reservation_items: vẫn IDENTITY → mỗi item 1 câu INSERT (N + 1)
+ *
+ * Chạy bằng: ./gradlew benchmark
+ */
+@Tag("benchmark")
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.example.AR_BE.benchmark.OrderInsertBatchBenchmarkTest$InsertCounter"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class OrderInsertBatchBenchmarkTest {
+
+    private static final int ITEMS_PER_ORDER = 20;
+    private static final int ORDERS = 200;
+
+    private static DB db;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) throws Exception {
+        if (db == null) {
+            DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+            config.setPort(0);
+            db = DB.newEmbeddedDB(config.build());
+            db.start();
+            db.createDB("ar_be_benchmark");
+        }
+        int port = db.getConfiguration().getPort();
+        registry.add("spring.datasource.url",
+                () -> "jdbc:mysql://localhost:" + port + "/ar_be_benchmark");
+        registry.add("spring.datasource.username", () -> "root");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        if (db != null) {
+            db.stop();
+        }
+    }
+
+    /**
+     * Đếm số lần prepare câu INSERT theo bảng.
+     */
+    public static class InsertCounter implements StatementInspector {
+        static final Map<String, AtomicInteger> PREPARED = new ConcurrentHashMap<>();
+
+        @Override
+        public String inspect(String sql) {
+            String lower = sql.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("insert into ")) {
+                String table = lower.substring("insert into ".length()).split("[\\s(]")[0];
+                PREPARED.computeIfAbsent(table, t -> new AtomicInteger()).incrementAndGet();
+            }
+            return sql;
+        }
+
+        static int count(String table) {
+            AtomicInteger counter = PREPARED.get(table);
+            return counter == null ? 0 : counter.get();
+        }
+    }
+
+    @Test
+    void orderItemsAreInsertedInOneBatch() {
+        User user = new User();
+        user.setEmail("bench@example.com");
+        user.setPassword("secret");
+        user.setPhoneNumber("0900000000");
+        entityManager.persist(user);
+
+        Category category = new Category();
+        category.setName("Bench");
+        entityManager.persist(category);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setOldPrice(100.0);
+            product.setSaleRate(0.0);
+            product.setQuantity(1_000_000);
+            product.setCategory(category);
+            entityManager.persist(product);
+            products.add(product);
+        }
+        entityManager.flush();
+
+        // Warm-up: lần đầu còn lấy block id từ id_generators
+        persistOrder(user, products);
+        entityManager.flush();
+        entityManager.clear();
+        user = entityManager.getReference(User.class, user.getId());
+        products = reload(products);
+
+        // ===== Order (pooled id) =====
+        InsertCounter.PREPARED.clear();
+        persistOrder(user, products);
+        entityManager.flush();
+        int orderStatements = InsertCounter.count("orders");
+        int orderItemStatements = InsertCounter.count("order_items");
+
+        // ===== StockReservation (IDENTITY) =====
+        InsertCounter.PREPARED.clear();
+        persistReservation(user, products);
+        entityManager.flush();
+        int reservationStatements = InsertCounter.count("stock_reservations");
+        int reservationItemStatements = InsertCounter.count("stock_reservation_items");
+
+        // ===== Thông lượng =====
+        entityManager.clear();
+        user = entityManager.getReference(User.class, user.getId());
+        products = reload(products);
+        long start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            persistOrder(user, products);
+            entityManager.flush();
+            entityManager.clear();
+        }
+        double msPerOrder = (System.nanoTime() - start) / 1_000_000.0 / ORDERS;
+
+        System.out.printf(Locale.ROOT,
+                "[benchmark] %d items/order%n"
+                        + "  pooled   : orders=%d, order_items=%d INSERT statement(s)%n"
+                        + "  identity : stock_reservations=%d, stock_reservation_items=%d INSERT statement(s)%n"
+                        + "  pooled throughput: %.3f ms/order over %d orders%n",
+                ITEMS_PER_ORDER, orderStatements, orderItemStatements,
+                reservationStatements, reservationItemStatements, msPerOrder, ORDERS);
+
+        assertEquals(1, orderStatements);
+        assertEquals(1, orderItemStatements);
+        assertEquals(ITEMS_PER_ORDER, reservationItemStatements);
+    }
+
+    private void persistOrder(User user, List<Product> products) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setShippingAddress("Benchmark street");
+        order.setStatus(StatusEnum.PENDING);
+        List<OrderItem> items = new ArrayList<>();
+        double total = 0;
+        for (Product product : products) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setQuantity(1);
+            item.setPriceAtPurchase(product.getOldPrice());
+            item.setProductType("Bench");
+            total += product.getOldPrice();
+            items.add(item);
+        }
+        order.setOrderItems(items);
+        order.setTotalAmount(total);
+        entityManager.persist(order);
+    }
+
+    private void persistReservation(User user, List<Product> products) {
+        StockReservation reservation = new StockReservation();
+        reservation.setUser(user);
+        reservation.setStatus(ReservationStatusEnum.ACTIVE);
+        reservation.setExpiresAt(Instant.now().plusSeconds(600));
+        List<StockReservationItem> items = new ArrayList<>();
+        for (Product product : products) {
+            StockReservationItem item = new StockReservationItem();
+            item.setReservation(reservation);
+            item.setProduct(product);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        reservation.setItems(items);
+        entityManager.persist(reservation);
+    }
+
+    private List<Product> reload(List<Product> products) {
+        List<Product> reloaded = new ArrayList<>();
+        for (Product product : products) {
+            reloaded.add(entityManager.find(Product.class, product.getId()));
+        }
+        return reloaded;
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.AR_BE.stress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.TransactionException;
+
+import com.example.AR_BE.domain.Category;
+import com.example.AR_BE.domain.Order;
+import com.example.AR_BE.domain.Product;
+import com.example.AR_BE.domain.Role;
+import com.example.AR_BE.domain.User;
+import com.example.AR_BE.domain.request.CreateOrderRequest;
+import com.example.AR_BE.domain.request.OrderItemRequest;
+import com.example.AR_BE.repository.CategoryRepository;
+import com.example.AR_BE.repository.ProductRepository;
+import com.example.AR_BE.repository.RoleRepository;
+import com.example.AR_BE.repository.UserRepository;
+import com.example.AR_BE.service.OrderService;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+/**
+ * Checkout đồng thời trên vài product ít stock (virtual thread, MariaDB nhúng, schema từ Flyway):
+ * - Đợt 1: chỉ createOrder → bán hết stock, các request sau bị từ chối
+ * - Đợt 2: createOrder xen với nhiều request hủy / đổi status cùng lúc trên cùng 1 đơn
+ *   (user cancelMyOrder, admin cancelOrder, admin updateOrderStatus CANCELLED / CONFIRMED)
+ * Sau đó kiểm tra:
+ * - stock không âm
+ * - stock + số lượng của đơn chưa hủy = stock ban đầu (không bán quá, không hoàn 2 lần)
+ * - mỗi đơn chỉ có tối đa 1 request hủy thành công
+ * - total_amount = SUM(price_at_purchase * quantity) của items
+ * In ra orders/s và p50 / p99 latency.
+ *
+ * Chạy bằng: ./gradlew stress
+ */
+@Tag("stress")
+@SpringBootTest(properties = {
+        "aws.s3.bucket-name=stress",
+        "aws.s3.region=us-east-1",
+        "aws.s3.access-key=stress",
+        "aws.s3.secret-key=stress",
+        "app.orders.async.enabled=false",
+        "app.orders.waiting-room.enabled=false",
+        "app.orders.archive.enabled=false",
+        "app.orders.pending-expiry.enabled=false",
+        "app.reconciliation.enabled=false",
+        "app.reports.rollup.rebuild-cron=-",
+        // Hàng nghìn virtual thread cùng chờ 20 connection
+        "spring.datasource.hikari.connection-timeout=120000"
+})
+class CheckoutStressTest {
+
+    private static final int PRODUCTS = 3;
+    private static final int STOCK_PER_PRODUCT = 100;
+    private static final int USERS = 50;
+    private static final int FIRST_WAVE_CREATES = 2000;
+    private static final int SECOND_WAVE_CREATES = 1000;
+    // Số request hủy / đổi status bắn cùng lúc vào mỗi đơn ở đợt 2
+    private static final int CONFLICTING_CALLS_PER_ORDER = 4;
+    // Email (updated_by) của các request cancelOrder từ admin
+    private static final String ADMIN_CANCEL_PREFIX = "admin-cancel-";
+
+    private static DB db;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Long> orderOwners = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> confirmedCancels = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> createLatencies = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> updateLatencies = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) throws Exception {
+        if (db == null) {
+            DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+            config.setPort(0);
+            db = DB.newEmbeddedDB(config.build());
+            db.start();
+            db.createDB("ar_be_stress");
+        }
+        int port = db.getConfiguration().getPort();
+        registry.add("spring.datasource.url",
+                () -> "jdbc:mysql://localhost:" + port + "/ar_be_stress");
+        registry.add("spring.datasource.username", () -> "root");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        if (db != null) {
+            db.stop();
+        }
+    }
+
+    @Test
+    void concurrentCheckoutNeverOversellsNorRestoresTwice() throws Exception {
+        List<Long> productIds = seedProducts();
+        List<Jwt> users = seedUsers();
+        Map<Long, Jwt> usersById = new ConcurrentHashMap<>();
+        for (Jwt user : users) {
+            usersById.put(userId(user), user);
+        }
+        User adminDB = userRepository.findByEmail("admin@gmail.com");
+        Jwt admin = token(adminDB.getId(), adminDB.getEmail(), adminDB.getName(), "ADMIN");
+
+        long start = System.nanoTime();
+
+        // ===== Đợt 1: chỉ tạo đơn =====
+        List<Callable<Void>> firstWave = new ArrayList<>();
+        for (int i = 0; i < FIRST_WAVE_CREATES; i++) {
+            firstWave.add(createCall(users, productIds));
+        }
+        runConcurrently(firstWave);
+        int soldOutOrders = orderOwners.size();
+        int soldOutRejected = rejected.get();
+
+        // ===== Đợt 2: tạo đơn + nhiều request hủy / đổi status tranh nhau trên cùng đơn =====
+        List<Callable<Void>> secondWave = new ArrayList<>();
+        for (int i = 0; i < SECOND_WAVE_CREATES; i++) {
+            secondWave.add(createCall(users, productIds));
+        }
+        for (Map.Entry<Long, Long> order : orderOwners.entrySet()) {
+            Long orderId = order.getKey();
+            Jwt owner = usersById.get(order.getValue());
+            // cancelOrder của admin không báo lỗi khi đơn đã hủy → email riêng để biết qua updated_by
+            Jwt adminCancel = token(adminDB.getId(), ADMIN_CANCEL_PREFIX + orderId + "@example.com",
+                    adminDB.getName(), "ADMIN");
+            secondWave.add(timed(updateLatencies, owner, () -> {
+                orderService.cancelMyOrder(orderId);
+                cancelled(orderId);
+            }));
+            for (int i = 1; i < CONFLICTING_CALLS_PER_ORDER; i++) {
+                int kind = i % 3;
+                secondWave.add(timed(updateLatencies, kind == 0 ? adminCancel : admin, () -> {
+                    if (kind == 0) {
+                        orderService.cancelOrder(orderId);
+                    } else if (kind == 1) {
+                        orderService.updateOrderStatus(orderId, "CANCELLED");
+                        cancelled(orderId);
+                    } else {
+                        orderService.updateOrderStatus(orderId, "CONFIRMED");
+                    }
+                }));
+            }
+        }
+        Collections.shuffle(secondWave);
+        runConcurrently(secondWave);
+        // Đơn do cancelOrder của admin hủy được (CANCELLED là trạng thái cuối nên updated_by không bị ghi đè)
+        jdbcTemplate.queryForList("SELECT id FROM orders WHERE status = 'CANCELLED' AND updated_by LIKE ?",
+                Long.class, ADMIN_CANCEL_PREFIX + "%").forEach(this::cancelled);
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        int calls = FIRST_WAVE_CREATES + secondWave.size();
+
+        System.out.printf(Locale.ROOT,
+                "[stress] %d products x %d stock, %d users, %d calls in %.2f s%n"
+                        + "  orders created : %d (%d in wave 1), calls rejected=%d, failed=%d%n"
+                        + "  throughput     : %.1f orders/s, %.1f calls/s%n"
+                        + "  createOrder    : p50=%.2f ms, p99=%.2f ms%n"
+                        + "  cancel/update  : p50=%.2f ms, p99=%.2f ms%n",
+                PRODUCTS, STOCK_PER_PRODUCT, USERS, calls, seconds,
+                orderOwners.size(), soldOutOrders, rejected.get(), failed.get(),
+                orderOwners.size() / seconds, calls / seconds,
+                percentileMs(createLatencies, 0.50), percentileMs(createLatencies, 0.99),
+                percentileMs(updateLatencies, 0.50), percentileMs(updateLatencies, 0.99));
+
+        // ===== Kiểm tra =====
+        // 1. Stock không âm
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM products WHERE quantity < 0", Integer.class));
+
+        // 2. stock + đã bán (đơn chưa hủy) = stock ban đầu: bán quá → thiếu, hoàn 2 lần → thừa
+        for (Long productId : productIds) {
+            Integer stock = jdbcTemplate.queryForObject(
+                    "SELECT quantity FROM products WHERE id = ?", Integer.class, productId);
+            Integer committed = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(oi.quantity), 0) FROM order_items oi "
+                            + "JOIN orders o ON o.id = oi.order_id "
+                            + "WHERE oi.product_id = ? AND o.status <> 'CANCELLED'",
+                    Integer.class, productId);
+            assertEquals(STOCK_PER_PRODUCT, stock + committed,
+                    "product " + productId + ": stock=" + stock + ", committed=" + committed);
+        }
+
+        // 3. Mỗi đơn hủy thành công tối đa 1 lần, và đơn đó thật sự đã CANCELLED
+        for (Map.Entry<Long, AtomicInteger> cancel : confirmedCancels.entrySet()) {
+            assertTrue(cancel.getValue().get() <= 1,
+                    "order " + cancel.getKey() + " cancelled " + cancel.getValue().get() + " times");
+            assertEquals("CANCELLED", jdbcTemplate.queryForObject(
+                    "SELECT status FROM orders WHERE id = ?", String.class, cancel.getKey()));
+        }
+
+        // 4. Đơn tạo thành công đều có trong DB, tổng tiền khớp items
+        assertEquals(orderOwners.size(), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM orders", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ("
+                        + " SELECT o.id FROM orders o JOIN order_items oi ON oi.order_id = o.id"
+                        + " GROUP BY o.id, o.total_amount"
+                        + " HAVING ABS(o.total_amount - SUM(oi.price_at_purchase * oi.quantity)) > 0.005"
+                        + ") mismatched", Integer.class));
+
+        // 5. Stock bán hết ở đợt 1 → phải có đơn bị từ chối
+        assertTrue(soldOutRejected > 0, "stock never ran out");
+    }
+
+    private Callable<Void> createCall(List<Jwt> users, List<Long> productIds) {
+        Jwt user = users.get(ThreadLocalRandom.current().nextInt(users.size()));
+        CreateOrderRequest req = new CreateOrderRequest();
+        req.setShippingAddress("Stress street");
+        List<OrderItemRequest> items = new ArrayList<>();
+        // 1-2 dòng, product trộn thứ tự để các đơn tranh lock theo nhiều chiều
+        List<Long> shuffled = new ArrayList<>(productIds);
+        Collections.shuffle(shuffled);
+        int lines = 1 + ThreadLocalRandom.current().nextInt(2);
+        for (int i = 0; i < lines; i++) {
+            OrderItemRequest item = new OrderItemRequest();
+            item.setProductId(shuffled.get(i));
+            item.setQuantity(1 + ThreadLocalRandom.current().nextInt(3));
+            items.add(item);
+        }
+        req.setItems(items);
+        return timed(createLatencies, user, () -> {
+            Order order = orderService.createOrder(req);
+            orderOwners.put(order.getId(), userId(user));
+        });
+    }
+
+    private void cancelled(Long orderId) {
+        confirmedCancels.computeIfAbsent(orderId, id -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * Chạy action với user của token, ghi latency.
+     * Lỗi nghiệp vụ (hết stock, sai trạng thái) → rejected; lỗi DB / transaction → failed.
+     */
+    private Callable<Void> timed(ConcurrentLinkedQueue<Long> latencies, Jwt user, Runnable action) {
+        return () -> {
+            SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(user));
+            long begin = System.nanoTime();
+            try {
+                action.run();
+            } catch (DataAccessException | TransactionException e) {
+                failed.incrementAndGet();
+            } catch (RuntimeException e) {
+                rejected.incrementAndGet();
+            } finally {
+                latencies.add(System.nanoTime() - begin);
+                SecurityContextHolder.clearContext();
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Mỗi call 1 virtual thread, tất cả cùng bắt đầu sau 1 latch.
+     */
+    private static void runConcurrently(List<Callable<Void>> calls) throws Exception {
+        CountDownLatch go = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Callable<Void> call : calls) {
+                executor.submit(() -> {
+                    go.await();
+                    return call.call();
+                });
+            }
+            go.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.MINUTES), "stress calls did not finish");
+        }
+    }
+
+    private List<Long> seedProducts() {
+        Category category = new Category();
+        category.setName("Stress");
+        categoryRepository.save(category);
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setName("Stress product " + i);
+            // Giá lẻ + giảm giá để tổng tiền có phần thập phân
+            product.setOldPrice(199.99 + i);
+            product.setSaleRate(0.15);
+            product.setQuantity(STOCK_PER_PRODUCT);
+            product.setCategory(category);
+            ids.add(productRepository.save(product).getId());
+        }
+        return ids;
+    }
+
+    private List<Jwt> seedUsers() {
+        Role userRole = roleRepository.findByName("USER").orElseThrow();
+        List<Jwt> tokens = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setName("Stress " + i);
+            user.setEmail("stress" + i + "@example.com");
+            user.setPassword("secret");
+            user.setPhoneNumber(String.format(Locale.ROOT, "09%08d", i));
+            user.setRole(userRole);
+            userRepository.save(user);
+            tokens.add(token(user.getId(), user.getEmail(), user.getName(), "USER"));
+        }
+        return tokens;
+    }
+
+    /**
+     * Token đã "verify" giống JwtDecoder trả về: subject = email, claim "User" = id / name / role.
+     */
+    private static Jwt token(Long id, String email, String name, String role) {
+        Instant now = Instant.now();
+        return Jwt.withTokenValue("stress-" + id)
+                .header("alg", "HS512")
+                .subject(email)
+                .claim("User", Map.of("id", id, "email", email, "name", name, "role", role))
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(3600))
+                .build();
+    }
+
+    private static Long userId(Jwt token) {
+        Map<String, Object> user = token.getClaim("User");
+        return ((Number) user.get("id")).longValue();
+    }
+
+    private static double percentileMs(ConcurrentLinkedQueue<Long> latencies, double percentile) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1_000_000.0;
+    }
+}